@@ -0,0 +1,104 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/* Beam search: a breadth-first search that only keeps the most promising
+ * "width" states of each layer.  Every state in a layer has the same g-value,
+ * so the most promising ones are simply the ones with the lowest heuristic
+ * values.  States that were already kept in an earlier layer are skipped, so
+ * the search cannot go around in circles.
+ *
+ * Building each layer is bounded by the width (each state has at most 4
+ * children) and also by a time budget: if the budget runs out part way
+ * through a layer, the layer is built from the children generated so far.
+ * Memory is bounded by the width times the number of layers.  Because most of
+ * each layer is thrown away, the solutions are usually not optimal, and a
+ * beam that is too narrow can miss the solved state entirely.
+ */
+public class BeamSearch {
+
+	/* The default number of layers after which the search gives up.  A narrow
+	 * beam can wander far from an optimal solution before it reaches the solved
+	 * state, so this is far above the 31 moves any board needs.
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 10000;
+
+	private final Heuristic heuristic;
+	private final int width;
+	private final long layerBudgetNanos;
+	private final int maxDepth;
+
+	/* Creates a search that keeps width states per layer, spends at most
+	 * layerBudgetNanos building each layer, and gives up after maxDepth layers.
+	 */
+	public BeamSearch(Heuristic heuristic, int width, long layerBudgetNanos, int maxDepth) {
+		if (width < 1) {
+			throw new IllegalArgumentException("the width must be at least 1");
+		}
+		this.heuristic = heuristic;
+		this.width = width;
+		this.layerBudgetNanos = layerBudgetNanos;
+		this.maxDepth = maxDepth;
+	}
+
+	/* Returns a solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved, and an IllegalStateException if the beam does not reach
+	 * the solved state.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+
+		List<SearchNode> layer = new ArrayList<>();
+		layer.add(new SearchNode(initialState, heuristic.h(initialState)));
+		Set<PuzzleState> kept = new HashSet<>();
+		kept.add(initialState);
+
+		for (int depth = 0; depth <= maxDepth && !layer.isEmpty(); depth++) {
+			for (SearchNode node : layer) {
+				if (node.getState().equals(PuzzleState.GOAL_STATE)) {
+					return node.path();
+				}
+			}
+			PuzzleSolver.checkCancelled();
+
+			/* generate the next layer until it is done or the time runs out */
+			long deadline = System.nanoTime() + layerBudgetNanos;
+			List<SearchNode> next = new ArrayList<>();
+			for (SearchNode node : layer) {
+				List<SearchNode> children = node.children(heuristic);
+				stats.nodeExpanded();
+				stats.nodesGenerated(children.size());
+				for (SearchNode child : children) {
+					if (!kept.contains(child.getState())) {
+						next.add(child);
+					}
+				}
+				if (System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+
+			/* keep the best width states, each one only once */
+			Collections.sort(next);
+			layer = new ArrayList<>(Math.min(width, next.size()));
+			for (SearchNode child : next) {
+				if (layer.size() == width) {
+					break;
+				}
+				if (kept.add(child.getState())) {
+					layer.add(child);
+				}
+			}
+		}
+
+		throw new IllegalStateException("the beam did not reach the solved state");
+	}
+
+}
@@ -0,0 +1,97 @@
+package board;
+
+/* Adds dual lookups to another heuristic.  Reading a board the other way
+ * around, as "which goal position is each position's tile headed for" instead
+ * of "which tile is in each position", gives another board called its dual.
+ * When the blank is in its goal position, solving the dual takes exactly as
+ * many moves as solving the board itself (the solution of one, played
+ * backwards, solves the other), so the heuristic value of the dual is also a
+ * lower bound for the board, and this heuristic returns the larger of the two.
+ * When the blank is anywhere else that is not true, and only the board itself
+ * is looked up.
+ *
+ * Dual lookups help most with heuristics that treat some tiles differently
+ * from others, such as PatternDatabaseHeuristic.  The Manhattan Distance and
+ * Walking Distance give a board and its dual the same value, so wrapping them
+ * changes nothing.  The combined heuristic is admissible but not consistent,
+ * since a move can take a board from one lookup to the other, so the engines
+ * use pathmax to make up for that (see PuzzleSolver.aStar() and
+ * IterativeDeepeningSearch).
+ */
+public class DualHeuristic implements Heuristic {
+
+	private static final int GOAL_BLANK = PuzzleState.GOAL_STATE.getBlankPosition();
+
+	/* GOAL_POSITION[tile] is where the tile belongs, and GOAL_TILE[position] is
+	 * the tile that belongs there
+	 */
+	private static final int[] GOAL_POSITION = new int[9];
+	private static final int[] GOAL_TILE = new int[9];
+
+	/* static initializer to fill in the goal tables */
+	static {
+		for (int position = 0; position < 9; position++) {
+			int tile = PuzzleState.GOAL_STATE.getTile(position);
+			GOAL_TILE[position] = tile;
+			GOAL_POSITION[tile] = position;
+		}
+	}
+
+	private final Heuristic base;
+
+	public DualHeuristic(Heuristic base) {
+		this.base = base;
+	}
+
+	@Override
+	public int h(PuzzleState state) {
+		int h = base.h(state);
+		if (state.getBlankPosition() == GOAL_BLANK) {
+			h = Math.max(h, base.h(PuzzleState.fromPacked(dual(state.getPacked()))));
+		}
+		return h;
+	}
+
+	@Override
+	public void evaluateAll(long[] boards, int count, int[] out) {
+		base.evaluateAll(boards, count, out);
+
+		/* look up the duals of the boards whose blank is home all at once */
+		long[] duals = new long[count];
+		int[] owners = new int[count];
+		int numDuals = 0;
+		for (int b = 0; b < count; b++) {
+			if (((boards[b] >>> (4 * GOAL_BLANK)) & 0xF) == 0) {
+				duals[numDuals] = dual(boards[b]);
+				owners[numDuals] = b;
+				numDuals++;
+			}
+		}
+		if (numDuals > 0) {
+			int[] dualH = new int[numDuals];
+			base.evaluateAll(duals, numDuals, dualH);
+			for (int d = 0; d < numDuals; d++) {
+				out[owners[d]] = Math.max(out[owners[d]], dualH[d]);
+			}
+		}
+	}
+
+	/* Returns the dual of a packed board: for each position, the tile there is
+	 * replaced by the tile that belongs in the position, and moved to the
+	 * position where the tile belongs.
+	 */
+	static long dual(long board) {
+		long dual = 0;
+		for (int position = 0; position < 9; position++) {
+			int tile = (int) (board >>> (4 * position)) & 0xF;
+			dual |= (long) GOAL_TILE[position] << (4 * GOAL_POSITION[tile]);
+		}
+		return dual;
+	}
+
+	@Override
+	public String toString() {
+		return "dual-" + base;
+	}
+
+}
@@ -0,0 +1,424 @@
+package board;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/* A breadth-first search that keeps its layers on disk instead of in memory,
+ * using "delayed duplicate detection."  Each layer (the states at one depth)
+ * is a file of packed boards (see PuzzleState.getPacked()) in sorted order.
+ * To build the next layer, the children of every state in the current layer
+ * are collected in a fixed-size buffer, and each time the buffer fills up it
+ * is sorted and written out as a "run."  The runs are then merged, which
+ * brings copies of the same board next to each other so they can be dropped
+ * without a hash table, and boards that are already in the previous layer or
+ * the current one are dropped by merging against those files too.  (Since a
+ * move can always be undone, a child can never be further back than that.)
+ *
+ * Memory use is set by the size of the run buffer, no matter how many states
+ * the search visits, and all file access is sequential, so a sweep of the
+ * whole state space runs at about the speed of the disk.
+ *
+ * solve() runs the same kind of search toward the solved state, but also
+ * prunes children whose g-value plus heuristic value is more than a bound.
+ * If the solved state is not found, the bound is raised to the lowest f-value
+ * that was pruned and the search starts over, like IDA* does.  Because the
+ * heuristic is admissible, every state on an optimal solution fits under the
+ * final bound, so the first time the solved state shows up is at its optimal
+ * depth.  The solution is then traced back through the layer files.
+ */
+public class ExternalSearch {
+
+	/* The default number of boards held in memory before a run is written. */
+	public static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final Path scratchDirectory;
+	private final long[] run;
+
+	/* Creates a search that keeps its files in a new directory inside the
+	 * given one, and holds at most runSize boards (8 bytes each) in memory.
+	 */
+	public ExternalSearch(Path scratchDirectory, int runSize) {
+		if (runSize < 16) {
+			throw new IllegalArgumentException("the run size must be at least 16");
+		}
+		this.scratchDirectory = scratchDirectory;
+		this.run = new long[runSize];
+	}
+
+	/* Visits every state that can be reached from the given one and returns the
+	 * number of states at each depth.  The last entry is the depth of the states
+	 * that are furthest away.
+	 */
+	public long[] sweep(PuzzleState start) {
+		Path directory = createDirectory();
+		try {
+			List<Long> sizes = new ArrayList<>();
+			Path previous = null;
+			Path current = directory.resolve("layer-0");
+			writeSingle(current, start.getPacked());
+			sizes.add(1L);
+
+			for (int depth = 1; ; depth++) {
+				Path next = directory.resolve("layer-" + depth);
+				long size = expand(directory, depth, previous, current, null, 0, null, new SearchStatistics());
+				if (size == 0) {
+					break;
+				}
+				sizes.add(size);
+				if (previous != null) {
+					Files.delete(previous);
+				}
+				previous = current;
+				current = next;
+			}
+
+			long[] result = new long[sizes.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = sizes.get(i);
+			}
+			return result;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved.
+	 */
+	public List<PuzzleState> solve(PuzzleState start, Heuristic heuristic, SearchStatistics stats) {
+		final long goal = PuzzleState.GOAL_STATE.getPacked();
+		if (start.getPacked() == goal) {
+			return Collections.singletonList(start);
+		}
+		if (!start.isSolvable()) {
+			throw new IllegalArgumentException(start + "\ncannot be solved");
+		}
+
+		int bound = heuristic.h(start);
+		while (true) {
+			Path directory = createDirectory();
+			try {
+				List<Path> layers = new ArrayList<>();
+				layers.add(directory.resolve("layer-0"));
+				writeSingle(layers.get(0), start.getPacked());
+
+				/* the lowest f-value pruned in this pass, which is the next bound */
+				int[] nextBound = { Integer.MAX_VALUE };
+				for (int depth = 1; ; depth++) {
+					Path previous = (depth >= 2) ? layers.get(depth - 2) : null;
+					Path current = layers.get(depth - 1);
+					Path next = directory.resolve("layer-" + depth);
+					long size = expand(directory, depth, previous, current, heuristic, bound, nextBound, stats);
+					if (size < 0) {
+						return tracePath(layers, goal);
+					}
+					if (size == 0) {
+						break;
+					}
+					layers.add(next);
+				}
+
+				if (nextBound[0] == Integer.MAX_VALUE) {
+					throw new IllegalStateException("the search ran out of states without finding the solved state");
+				}
+				bound = nextBound[0];
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				deleteDirectory(directory);
+			}
+		}
+	}
+
+	/* Writes the layer at the given depth, made from the children of the layer
+	 * before it (current), to the file "layer-<depth>" and returns its size.
+	 * Boards already in previous (which may be null) or current are left out.
+	 * If a heuristic is given, children with an f-value above the bound are left
+	 * out as well and the lowest such f-value is kept in nextBound[0], and -1 is
+	 * returned as soon as the solved state is generated.
+	 */
+	private long expand(Path directory, int depth, Path previous, Path current,
+			Heuristic heuristic, int bound, int[] nextBound, SearchStatistics stats) throws IOException {
+
+		final long goal = PuzzleState.GOAL_STATE.getPacked();
+
+		/* write the children out in sorted runs */
+		List<Path> runs = new ArrayList<>();
+		int runLength = 0;
+		try (LongReader states = new LongReader(current)) {
+			while (states.hasNext()) {
+				PuzzleState state = PuzzleState.fromPacked(states.next());
+				List<PuzzleState> children = state.neighbors();
+				stats.nodeExpanded();
+				stats.nodesGenerated(children.size());
+				for (PuzzleState child : children) {
+					if (heuristic != null) {
+						if (child.getPacked() == goal) {
+							return -1;
+						}
+						int f = depth + heuristic.h(child);
+						if (f > bound) {
+							nextBound[0] = Math.min(nextBound[0], f);
+							continue;
+						}
+					}
+					if (runLength == run.length) {
+						runs.add(writeRun(directory, depth, runs.size(), runLength));
+						runLength = 0;
+					}
+					run[runLength++] = child.getPacked();
+				}
+			}
+		}
+		if (runLength > 0 || runs.isEmpty()) {
+			runs.add(writeRun(directory, depth, runs.size(), runLength));
+		}
+
+		/* merge the runs, dropping copies and boards from the last two layers */
+		long size = 0;
+		List<LongReader> readers = new ArrayList<>();
+		try {
+			PriorityQueue<LongReader> merge = new PriorityQueue<>(
+					(a, b) -> Long.compare(a.peek(), b.peek()));
+			for (Path runFile : runs) {
+				LongReader reader = new LongReader(runFile);
+				readers.add(reader);
+				if (reader.hasNext()) {
+					merge.add(reader);
+				}
+			}
+			LongReader older = (previous == null) ? null : new LongReader(previous);
+			if (older != null) {
+				readers.add(older);
+			}
+			LongReader same = new LongReader(current);
+			readers.add(same);
+
+			try (LongWriter out = new LongWriter(directory.resolve("layer-" + depth))) {
+				long last = -1;
+				while (!merge.isEmpty()) {
+					LongReader reader = merge.poll();
+					long board = reader.next();
+					if (reader.hasNext()) {
+						merge.add(reader);
+					}
+					if (board == last) {
+						continue;
+					}
+					last = board;
+					if (contains(older, board) || contains(same, board)) {
+						continue;
+					}
+					out.write(board);
+					size++;
+				}
+			}
+		} finally {
+			for (LongReader reader : readers) {
+				reader.close();
+			}
+			for (Path runFile : runs) {
+				Files.deleteIfExists(runFile);
+			}
+		}
+		return size;
+	}
+
+	/* Advances the sorted reader past every board lower than the given one and
+	 * returns true if the next board is the given one.  Boards are looked up in
+	 * increasing order, so each file is only read once.
+	 */
+	private static boolean contains(LongReader reader, long board) throws IOException {
+		if (reader == null) {
+			return false;
+		}
+		while (reader.hasNext() && reader.peek() < board) {
+			reader.next();
+		}
+		return reader.hasNext() && reader.peek() == board;
+	}
+
+	/* Sorts the first length boards in the run buffer and writes them, without
+	 * copies, to a new run file.
+	 */
+	private Path writeRun(Path directory, int depth, int index, int length) throws IOException {
+		Arrays.sort(run, 0, length);
+		Path runFile = directory.resolve("run-" + depth + "-" + index);
+		try (LongWriter out = new LongWriter(runFile)) {
+			for (int i = 0; i < length; i++) {
+				if (i == 0 || run[i] != run[i - 1]) {
+					out.write(run[i]);
+				}
+			}
+		}
+		return runFile;
+	}
+
+	/* Follows the solved state back to the start of the search, one layer file
+	 * at a time.  Each step looks for any neighbor of the current state in the
+	 * layer before it, which is where its parent must be.
+	 */
+	private static List<PuzzleState> tracePath(List<Path> layers, long goal) throws IOException {
+		LinkedList<PuzzleState> path = new LinkedList<>();
+		PuzzleState current = PuzzleState.fromPacked(goal);
+		path.addFirst(current);
+		for (int depth = layers.size() - 1; depth >= 0; depth--) {
+			List<PuzzleState> neighbors = current.neighbors();
+			long[] candidates = new long[neighbors.size()];
+			for (int i = 0; i < candidates.length; i++) {
+				candidates[i] = neighbors.get(i).getPacked();
+			}
+			Arrays.sort(candidates);
+
+			PuzzleState parent = null;
+			try (LongReader layer = new LongReader(layers.get(depth))) {
+				for (long candidate : candidates) {
+					if (contains(layer, candidate)) {
+						parent = PuzzleState.fromPacked(candidate);
+						break;
+					}
+				}
+			}
+			if (parent == null) {
+				throw new IllegalStateException("no parent found in layer " + depth);
+			}
+			path.addFirst(parent);
+			current = parent;
+		}
+		return path;
+	}
+
+	private static void writeSingle(Path file, long board) throws IOException {
+		try (LongWriter out = new LongWriter(file)) {
+			out.write(board);
+		}
+	}
+
+	private Path createDirectory() {
+		try {
+			Files.createDirectories(scratchDirectory);
+			return Files.createTempDirectory(scratchDirectory, "external-search-");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void deleteDirectory(Path directory) {
+		try {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/* Reads a file of longs in order through a buffer. */
+	private static class LongReader implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		private boolean hasPeeked = false;
+		private long peeked;
+
+		LongReader(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			buffer.flip();
+		}
+
+		boolean hasNext() throws IOException {
+			if (hasPeeked) {
+				return true;
+			}
+			if (buffer.remaining() < 8) {
+				buffer.compact();
+				while (buffer.position() < 8 && channel.read(buffer) != -1) {
+					/* keep reading until a whole long is available */
+				}
+				buffer.flip();
+				if (buffer.remaining() < 8) {
+					return false;
+				}
+			}
+			peeked = buffer.getLong();
+			hasPeeked = true;
+			return true;
+		}
+
+		/* Returns the next long without moving past it.  Only valid right after
+		 * hasNext() returns true.
+		 */
+		long peek() {
+			return peeked;
+		}
+
+		long next() throws IOException {
+			if (!hasNext()) {
+				throw new IllegalStateException("the end of the file has been reached");
+			}
+			hasPeeked = false;
+			return peeked;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/* Writes longs to a new file through a buffer. */
+	private static class LongWriter implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+		LongWriter(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		}
+
+		void write(long value) throws IOException {
+			if (buffer.remaining() < 8) {
+				flush();
+			}
+			buffer.putLong(value);
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package board;
+
+import java.util.Arrays;
+
+/* A LongArray backed by a plain long[] that doubles in size when it needs to
+ * grow.  New slots are all zeros.
+ */
+final class HeapLongArray implements LongArray {
+
+	private long[] values;
+
+	HeapLongArray(int capacity) {
+		this.values = new long[capacity];
+	}
+
+	long capacity() {
+		return values.length;
+	}
+
+	/* Doubles the array until there is room for the given number of longs. */
+	void ensureCapacity(long capacity) {
+		if (capacity > values.length) {
+			long doubled = values.length;
+			while (doubled < capacity) {
+				doubled *= 2;
+			}
+			if (doubled > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("an array of " + capacity + " longs is too large");
+			}
+			values = Arrays.copyOf(values, (int) doubled);
+		}
+	}
+
+	/* Sets every slot back to 0. */
+	void clear() {
+		Arrays.fill(values, 0);
+	}
+
+	@Override
+	public long get(long index) {
+		return values[(int) index];
+	}
+
+	@Override
+	public void set(long index, long value) {
+		values[(int) index] = value;
+	}
+
+}
@@ -0,0 +1,36 @@
+package board;
+
+/* A strategy for estimating how many moves are left before a PuzzleState
+ * reaches the solved state.  PuzzleSolver accepts any Heuristic, which makes
+ * it possible to run the same set of scrambles with different heuristics and
+ * compare how many nodes each one expands against how expensive it is to
+ * evaluate.
+ *
+ * For the solutions returned by PuzzleSolver to be optimal, the heuristic
+ * must be "admissible," meaning it never overestimates the number of moves
+ * that are actually left.
+ */
+public interface Heuristic {
+
+	/* The heuristic used when the caller does not ask for a specific one. */
+	Heuristic DEFAULT = new ManhattanReversalHeuristic();
+
+	/* Returns the estimated number of moves needed to solve the given state.
+	 * This must be 0 for the goal state.
+	 */
+	int h(PuzzleState state);
+
+	/* Stores the estimate for each of the first count boards, given in the packed
+	 * form returned by PuzzleState.getPacked(), in the corresponding entry of out.
+	 * Solvers call this to evaluate all of the children of a node (or any other
+	 * group of boards) at once.  Heuristics that can evaluate many boards faster
+	 * than one at a time should override it; by default it just calls h() on each
+	 * board.
+	 */
+	default void evaluateAll(long[] boards, int count, int[] out) {
+		for (int b = 0; b < count; b++) {
+			out[b] = h(PuzzleState.fromPacked(boards[b]));
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Gives hints (the next move of an optimal solution and the number of moves
+ * left) while the user plays, without solving the puzzle from scratch after
+ * every move.
+ *
+ * The engine remembers every state it has seen on an optimal solution, along
+ * with its exact distance from the solved state and the next state on that
+ * solution.  When the user makes a move:
+ *
+ *   - If the new state has been seen before (for example, the user followed
+ *     the hint or took back a move), the answer is already known.
+ *   - Otherwise, the new state is a neighbor of the previous state, whose
+ *     distance d is known.  Since every move changes the distance to the solved
+ *     state by exactly 1, the new state is either d - 1 or d + 1 moves away.  A
+ *     depth-first search limited to d - 1 moves decides which one.  This search
+ *     is usually very small because it can stop as soon as it reaches any state
+ *     the engine has seen before.  If no such solution exists, undoing the move
+ *     and following the old solution is optimal.
+ *
+ * The depth-first search has a time budget.  If it runs out, the engine falls
+ * back on undoing the move, and the hint is marked as possibly not optimal.
+ */
+public class HintEngine {
+
+	/* The cache is cleared once it holds this many states, so that long sessions
+	 * do not keep growing it.
+	 */
+	private static final int MAX_KNOWN_STATES = 200000;
+
+	private final Heuristic heuristic;
+	private final long budgetNanos;
+
+	/* what the engine knows about each state it has seen on an optimal solution */
+	private final Map<PuzzleState, Known> known = new HashMap<>();
+
+	private PuzzleState current;
+	private Hint hint;
+
+	/* search state for the depth-first search, kept here to avoid passing it around */
+	private long deadline;
+	private long nodesSearched;
+	private boolean outOfTime;
+
+	/* Creates an engine that spends at most budgetMillis milliseconds looking
+	 * for a better plan after each move.
+	 */
+	public HintEngine(Heuristic heuristic, long budgetMillis) {
+		this.heuristic = heuristic;
+		this.budgetNanos = budgetMillis * 1000000L;
+	}
+
+	/* Starts over from the given state with a full search.  This is used for
+	 * a new scramble, or whenever the new state is not next to the previous one.
+	 */
+	public synchronized Hint reset(PuzzleState state) {
+		if (!known.containsKey(state)) {
+			remember(PuzzleSolver.solve(state, heuristic));
+		}
+		current = state;
+		hint = hintFor(state, true);
+		return hint;
+	}
+
+	/* Updates the plan after the user has moved from the previous state to the
+	 * given state, reusing as much of the previous work as possible.
+	 */
+	public synchronized Hint moved(PuzzleState state) {
+
+		if (known.containsKey(state)) {
+			current = state;
+			hint = hintFor(state, true);
+			return hint;
+		}
+
+		Known previous = (current == null) ? null : known.get(current);
+		if (previous == null || current.operationTo(state) == -1) {
+			return reset(state);
+		}
+
+		/* look for a solution one move shorter than the previous state's */
+		deadline = System.nanoTime() + budgetNanos;
+		nodesSearched = 0;
+		outOfTime = false;
+		List<PuzzleState> path = new ArrayList<>();
+		path.add(state);
+		PuzzleState previousState = current;
+		current = state;
+
+		if (search(state, -1, 0, previous.distance - 1, path)) {
+			hint = hintFor(state, true);
+		} else if (!outOfTime) {
+			/* there is no shorter solution, so undoing the move is optimal */
+			known.put(state, new Known(previous.distance + 1, previousState));
+			hint = hintFor(state, true);
+		} else {
+			/* undoing the move works, but a shorter solution might exist, so this
+			 * state is not remembered and the next move will trigger a full search
+			 */
+			hint = new Hint(state.operationTo(previousState), previous.distance + 1, false);
+		}
+		return hint;
+	}
+
+	/* Returns the most recent hint, or null if the engine has not been given a
+	 * state yet.
+	 */
+	public synchronized Hint getHint() {
+		return hint;
+	}
+
+	/* Returns the optimal solution the engine currently knows for the given state,
+	 * in the same form as PuzzleSolver.solve(), or null if it does not know one.
+	 */
+	public synchronized List<PuzzleState> getPlan(PuzzleState state) {
+		if (!known.containsKey(state)) {
+			return null;
+		}
+		List<PuzzleState> plan = new ArrayList<>();
+		for (PuzzleState curr = state; curr != null; curr = known.get(curr).next) {
+			plan.add(curr);
+		}
+		return plan;
+	}
+
+	/* Depth-first search for a path of at most maxMoves moves from the given state to
+	 * the solved state, or to any state whose distance is known and short enough.
+	 * The states along the path are kept in path.  Returns true (after remembering
+	 * the new solution) if one was found.
+	 */
+	private boolean search(PuzzleState state, int parentOp, int g, int maxMoves, List<PuzzleState> path) {
+
+		Known k = known.get(state);
+		if (k != null) {
+			if (g + k.distance > maxMoves) {
+				return false;
+			}
+			/* every state on the path now has a known solution through this one */
+			for (int i = path.size() - 2; i >= 0; i--) {
+				known.put(path.get(i), new Known(k.distance + (path.size() - 1 - i), path.get(i + 1)));
+			}
+			return true;
+		}
+		if (g + heuristic.h(state) > maxMoves) {
+			return false;
+		}
+		if (state.equals(PuzzleState.GOAL_STATE)) {
+			known.put(state, new Known(0, null));
+			return search(state, parentOp, g, maxMoves, path);
+		}
+		if ((++nodesSearched & 1023) == 0 && System.nanoTime() > deadline) {
+			outOfTime = true;
+		}
+		if (outOfTime) {
+			return false;
+		}
+
+		for (int op : state.getPossibleOperations()) {
+			if (parentOp != -1 && op == BoardOperations.inverseOperation(parentOp)) {
+				continue;
+			}
+			PuzzleState child = state.getNewState(op);
+			path.add(child);
+			if (search(child, op, g + 1, maxMoves, path)) {
+				return true;
+			}
+			path.remove(path.size() - 1);
+		}
+		return false;
+	}
+
+	/* Records the distances along an optimal solution returned by PuzzleSolver. */
+	private void remember(List<PuzzleState> solution) {
+		if (known.size() > MAX_KNOWN_STATES) {
+			known.clear();
+			current = null;
+		}
+		for (int i = 0; i < solution.size(); i++) {
+			PuzzleState next = (i + 1 < solution.size()) ? solution.get(i + 1) : null;
+			known.put(solution.get(i), new Known(solution.size() - 1 - i, next));
+		}
+	}
+
+	private Hint hintFor(PuzzleState state, boolean optimal) {
+		Known k = known.get(state);
+		int operation = (k.next == null) ? -1 : state.operationTo(k.next);
+		return new Hint(operation, k.distance, optimal);
+	}
+
+	/* The exact distance of a state from the solved state, and the next state on
+	 * an optimal solution (null for the solved state itself).
+	 */
+	private static class Known {
+
+		private final int distance;
+		private final PuzzleState next;
+
+		private Known(int distance, PuzzleState next) {
+			this.distance = distance;
+			this.next = next;
+		}
+	}
+
+	/* A hint for the user: the operation to perform next (-1 if the puzzle is
+	 * already solved), how many moves are left, and whether that number is known
+	 * to be optimal.
+	 */
+	public static class Hint {
+
+		private final int operation;
+		private final int movesToGo;
+		private final boolean optimal;
+
+		private Hint(int operation, int movesToGo, boolean optimal) {
+			this.operation = operation;
+			this.movesToGo = movesToGo;
+			this.optimal = optimal;
+		}
+
+		public int getOperation() {
+			return operation;
+		}
+
+		public int getMovesToGo() {
+			return movesToGo;
+		}
+
+		public boolean isOptimal() {
+			return optimal;
+		}
+	}
+
+}
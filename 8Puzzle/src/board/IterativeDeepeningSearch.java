@@ -0,0 +1,130 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* IDA* (Iterative Deepening A*).  Instead of keeping an open list, it runs a
+ * series of depth-first searches, each of which gives up on a path as soon as
+ * its f-value goes over a threshold.  The first threshold is the heuristic
+ * value of the scrambled state, and each new one is the lowest f-value that
+ * went over the last threshold.  The first path found that reaches the solved
+ * state is optimal as long as the heuristic is admissible.
+ *
+ * IDA* only keeps the current path in memory and does almost no bookkeeping
+ * per node, so on boards where A* spends most of its time on its open list and
+ * hash table it can be faster, even though it revisits states.  A MovePruner
+ * cuts down on the revisits by never making a move that completes a sequence
+ * known to reach the same state as a shorter (or earlier) one.
+ *
+ * The heuristic values of the children of each node are looked up before any
+ * of them is searched, and improved with bidirectional pathmax (BPMX): since
+ * a move changes the true distance to the solved state by exactly 1, a child
+ * needs at least h(child) - 1 more moves from its parent, and at least
+ * h(parent) - 1 from itself.  The largest h(child) - 1 raises the parent's
+ * value, which can push it over the threshold so that none of its children
+ * are searched at all, and the raised value is handed down to the children.
+ * With a consistent heuristic this never changes anything, but with an
+ * inconsistent one, such as a DualHeuristic, it turns the occasional high
+ * value into cutoffs around it.
+ */
+public class IterativeDeepeningSearch {
+
+	private static final int FOUND = -1;
+
+	private final Heuristic heuristic;
+	private final MovePruner pruner;
+
+	/* Creates a search that skips redundant move sequences with
+	 * MovePruner.standard().
+	 */
+	public IterativeDeepeningSearch(Heuristic heuristic) {
+		this(heuristic, MovePruner.standard());
+	}
+
+	public IterativeDeepeningSearch(Heuristic heuristic, MovePruner pruner) {
+		this.heuristic = heuristic;
+		this.pruner = pruner;
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved, since IDA* would otherwise search forever.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+
+		List<PuzzleState> path = new ArrayList<>();
+		path.add(initialState);
+		int h = heuristic.h(initialState);
+		int threshold = h;
+		while (true) {
+			int next = search(initialState, h, pruner.start(), 0, threshold, path, stats);
+			if (next == FOUND) {
+				return path;
+			}
+			threshold = next;
+		}
+	}
+
+	/* Searches below the given state, which was reached with g moves that left
+	 * the pruner in pruneState, and has the given heuristic value.  Returns
+	 * FOUND, leaving the solution in path, or else the lowest f-value that went
+	 * over the threshold.
+	 */
+	private int search(PuzzleState state, int h, int pruneState, int g, int threshold, List<PuzzleState> path,
+			SearchStatistics stats) {
+
+		if (g + h > threshold) {
+			return g + h;
+		}
+		if (state.equals(PuzzleState.GOAL_STATE)) {
+			return FOUND;
+		}
+		PuzzleSolver.checkCancelled();
+
+		/* generate the children whose moves do not finish a redundant sequence
+		 * (which includes undoing the last move) */
+		ArrayList<Integer> operations = state.getPossibleOperations();
+		int[] childPruneStates = new int[operations.size()];
+		PuzzleState[] children = new PuzzleState[operations.size()];
+		long[] boards = new long[operations.size()];
+		int count = 0;
+		for (int op : operations) {
+			int next = pruner.next(pruneState, op);
+			if (next != MovePruner.PRUNED) {
+				childPruneStates[count] = next;
+				children[count] = state.getNewState(op);
+				boards[count] = children[count].getPacked();
+				count++;
+			}
+		}
+		int[] childH = new int[count];
+		heuristic.evaluateAll(boards, count, childH);
+		stats.nodeExpanded();
+		stats.nodesGenerated(count);
+
+		/* BPMX: every child's value, less one, is also a bound for this state */
+		for (int i = 0; i < count; i++) {
+			h = Math.max(h, childH[i] - 1);
+		}
+		if (g + h > threshold) {
+			return g + h;
+		}
+
+		int lowest = Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			path.add(children[i]);
+			int result = search(children[i], Math.max(childH[i], h - 1), childPruneStates[i], g + 1, threshold, path,
+					stats);
+			if (result == FOUND) {
+				return FOUND;
+			}
+			path.remove(path.size() - 1);
+			lowest = Math.min(lowest, result);
+		}
+		return lowest;
+	}
+
+}
@@ -0,0 +1,130 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/* K-best-first search: A* that takes the k best nodes off the open list at a
+ * time instead of one, generates and scores the children of all k of them in
+ * parallel (with a parallel stream over the batch), and then puts every new
+ * child on the open list in one pass.  Each batch only touches the open list
+ * and the table of g-values from one thread, so nothing needs a lock, and the
+ * slow part of an expansion, looking up the heuristic values, is spread
+ * across every core.
+ *
+ * Taking k nodes at once means some of them may have an f-value above the
+ * length of the solution, so the first time the solved state is reached is
+ * not necessarily the end.  Instead, the shortest path to the solved state
+ * found so far (the incumbent) is kept, and nodes whose f-value is at least
+ * its length are never expanded, since they cannot lead to anything shorter.
+ * The search ends once no such node is left on the open list, which proves
+ * that the incumbent is optimal, exactly as the first solution of A* is.
+ * The cost is a few extra expansions in the last batches, next to the nodes
+ * that A* would have expanded anyway.
+ */
+public class KBestFirstSearch {
+
+	/* The number of nodes expanded at a time when none is given. */
+	public static final int DEFAULT_BATCH_SIZE = 16;
+
+	private final Heuristic heuristic;
+	private final int batchSize;
+
+	public KBestFirstSearch(Heuristic heuristic, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("the batch size must be at least 1");
+		}
+		this.heuristic = heuristic;
+		this.batchSize = batchSize;
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+
+		SearchNode root = new SearchNode(initialState, heuristic.h(initialState));
+		PriorityQueue<SearchNode> openList = new PriorityQueue<>();
+		openList.add(root);
+
+		/* the lowest g-value each discovered state has been reached with so far */
+		Map<PuzzleState, Integer> bestG = new HashMap<>();
+		bestG.put(initialState, 0);
+
+		/* the shortest path to the solved state found so far */
+		SearchNode incumbent = null;
+		List<SearchNode> batch = new ArrayList<>(batchSize);
+
+		while (true) {
+
+			/* take the best nodes that could still lead to a shorter solution */
+			batch.clear();
+			while (batch.size() < batchSize && !openList.isEmpty()) {
+				if (incumbent != null && openList.peek().f() >= incumbent.g()) {
+					break;
+				}
+				SearchNode node = openList.remove();
+				/* skip nodes for states that were reached again with a lower g-value */
+				if (node.g() > bestG.get(node.getState())) {
+					continue;
+				}
+				if (node.getState().equals(PuzzleState.GOAL_STATE)) {
+					if (incumbent == null || node.g() < incumbent.g()) {
+						incumbent = node;
+					}
+					continue;
+				}
+				batch.add(node);
+			}
+			if (batch.isEmpty()) {
+				return incumbent.path();
+			}
+			PuzzleSolver.checkCancelled();
+
+			/* generate and score the children of the whole batch at once */
+			List<List<SearchNode>> childLists = batch.parallelStream()
+					.map(this::children)
+					.collect(Collectors.toList());
+
+			/* then merge them into the open list */
+			for (List<SearchNode> children : childLists) {
+				stats.nodeExpanded();
+				stats.nodesGenerated(children.size());
+				for (SearchNode child : children) {
+					Integer previousG = bestG.get(child.getState());
+					if (previousG != null && previousG <= child.g()) {
+						continue;
+					}
+					bestG.put(child.getState(), child.g());
+					openList.add(child);
+				}
+			}
+		}
+	}
+
+	/* Returns the children of a node with their h-values raised by bidirectional
+	 * pathmax, as in PuzzleSolver.aStar().
+	 */
+	private List<SearchNode> children(SearchNode node) {
+		List<SearchNode> children = node.children(heuristic);
+		int h = node.h();
+		for (SearchNode child : children) {
+			h = Math.max(h, child.h() - 1);
+		}
+		for (int i = 0; i < children.size(); i++) {
+			SearchNode child = children.get(i);
+			if (child.h() < h - 1) {
+				children.set(i, new SearchNode(child.getState(), node, child.getParentOperation(), h - 1));
+			}
+		}
+		return children;
+	}
+
+}
@@ -0,0 +1,121 @@
+package board;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* A histogram of durations (or any other non-negative longs) that many threads
+ * can record into at once without locking.  Like an HDR histogram, it keeps a
+ * fixed number of buckets whose width grows with the value: every power of 2
+ * is split into SUB_BUCKETS equal buckets, so any quantile it reports is within
+ * about 3% of the real value, from nanoseconds up to years, in a fixed 15 KB.
+ *
+ * Recording a value is one bit scan and one atomic increment.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/* values below SUB_BUCKETS get a bucket each, and every power of 2 from
+	 * there up to 2^63 gets SUB_BUCKETS more
+	 */
+	private static final int NUM_BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/* Adds a value to the histogram.  Negative values are counted as 0. */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/* getters */
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/* Returns the value that the given fraction (between 0 and 1) of the
+	 * recorded values are at or below, or 0 if nothing has been recorded.
+	 * Values recorded while this runs may or may not be included.
+	 */
+	public long getQuantile(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				/* report the middle of the bucket, but never more than the maximum */
+				return Math.min(lowestValueIn(i) + (bucketWidth(i) - 1) / 2, getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/* Adds everything recorded in the other histogram to this one. */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			long n = other.counts.get(i);
+			if (n != 0) {
+				counts.addAndGet(i, n);
+			}
+		}
+		count.add(other.count.sum());
+		sum.add(other.sum.sum());
+		max.accumulate(other.max.get());
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int topBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = topBit - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	private static long lowestValueIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket)) << shift;
+	}
+
+	private static long bucketWidth(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return 1;
+		}
+		return 1L << ((bucket - SUB_BUCKETS) / SUB_BUCKETS);
+	}
+
+}
@@ -0,0 +1,13 @@
+package board;
+
+/* An array of longs indexed by long, so that the heap and table code in
+ * PackedBoards can work the same way on arrays on the Java heap and on pages
+ * of native memory.
+ */
+interface LongArray {
+
+	long get(long index);
+
+	void set(long index, long value);
+
+}
@@ -0,0 +1,28 @@
+package board;
+
+/* The original heuristic for this project: the sum of the Manhattan Distances
+ * of all tiles on the board plus the number of direct tile reversals.  It is
+ * cheap to compute and needs no precomputed tables.
+ */
+public class ManhattanReversalHeuristic implements Heuristic {
+
+	@Override
+	public int h(PuzzleState state) {
+		return state.sumOfManhattanDistances() + state.numTileReversals();
+	}
+
+	@Override
+	public void evaluateAll(long[] boards, int count, int[] out) {
+		for (int b = 0; b < count; b++) {
+			out[b] = 0;
+		}
+		PackedHeuristics.addManhattanDistances(boards, count, out);
+		PackedHeuristics.addTileReversals(boards, count, out);
+	}
+
+	@Override
+	public String toString() {
+		return "manhattan+reversals";
+	}
+
+}
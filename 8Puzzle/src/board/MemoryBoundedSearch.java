@@ -0,0 +1,273 @@
+package board;
+
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+
+/* A memory-bounded version of the A* algorithm, based on SMA* (Simplified
+ * Memory-bounded A*).  PuzzleSolver.solve() keeps every PuzzleState it
+ * discovers, so its memory use grows without limit.  This search instead never
+ * keeps more than a fixed number of nodes in memory.
+ *
+ * It works like A*, except that nodes generate their children one at a time.
+ * When the node budget is used up, the least promising leaf (the one with the
+ * highest f-value, and the shallowest one among ties) is dropped.  Before it
+ * is dropped, its f-value is remembered by its parent, so the parent knows how
+ * promising that part of the tree was and can regenerate the child later if
+ * everything else turns out to be worse.  Once all of a node's children have
+ * been generated, the node's f-value is "backed up" to the lowest f-value of
+ * its children, which keeps the f-values of the remaining nodes accurate.
+ *
+ * As long as the budget is large enough to hold the states along an optimal
+ * solution (the length of the solution plus one), the solution found is
+ * optimal.  If it is not, an IllegalStateException is thrown.
+ */
+public class MemoryBoundedSearch {
+
+	/* A rough estimate of how many bytes each node kept in memory uses,
+	 * including its PuzzleState.  Used to turn a byte budget into a node budget.
+	 */
+	public static final int BYTES_PER_NODE = 200;
+
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	private final Heuristic heuristic;
+	private final int maxNodes;
+
+	/* The nodes that still have children which are not in memory, ordered so that
+	 * the most promising one (lowest f-value, deepest among ties) comes first.
+	 */
+	private TreeSet<Node> open;
+	/* The nodes that have no children in memory, ordered so that the least
+	 * promising one (highest f-value, shallowest among ties) comes first.
+	 */
+	private TreeSet<Node> leaves;
+	private int nodesInMemory;
+	private long nextId;
+
+	/* Creates a search that keeps at most maxNodes nodes in memory at once. */
+	public MemoryBoundedSearch(Heuristic heuristic, int maxNodes) {
+		if (maxNodes < 2) {
+			throw new IllegalArgumentException("the node budget must be at least 2, not " + maxNodes);
+		}
+		this.heuristic = heuristic;
+		this.maxNodes = maxNodes;
+	}
+
+	/* Creates a search whose nodes take up at most (approximately) maxBytes bytes. */
+	public static MemoryBoundedSearch withByteBudget(Heuristic heuristic, long maxBytes) {
+		return new MemoryBoundedSearch(heuristic, (int) Math.min(Integer.MAX_VALUE, maxBytes / BYTES_PER_NODE));
+	}
+
+	/* Finds an optimal solution to the given PuzzleState without keeping more
+	 * nodes in memory than the budget allows.  The returned List has the same
+	 * form as the one returned by PuzzleSolver.solve().
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+
+		open = new TreeSet<>(Comparator.comparingInt((Node n) -> n.openF)
+				.thenComparing(Comparator.comparingInt((Node n) -> n.depth).reversed())
+				.thenComparingLong(n -> n.id));
+		leaves = new TreeSet<>(Comparator.comparingInt((Node n) -> n.f).reversed()
+				.thenComparingInt(n -> n.depth)
+				.thenComparingLong(n -> n.id));
+		nodesInMemory = 0;
+		nextId = 0;
+
+		Node root = new Node(initialState, null, -1, -1);
+		root.f = heuristic.h(initialState);
+		attach(root);
+		nodesInMemory++;
+
+		while (true) {
+
+			if (open.isEmpty() || open.first().openF == INFINITY) {
+				throw new IllegalStateException("a budget of " + maxNodes
+						+ " nodes is too small to hold an optimal solution");
+			}
+
+			/* Every part of the tree that is not in memory hangs off of a node in the
+			 * open set, so if the best node in the open set is solved, nothing else can
+			 * lead to a shorter solution.
+			 */
+			Node best = open.first();
+			if (best.state.equals(PuzzleState.GOAL_STATE)) {
+				return pathTo(best);
+			}
+
+			generateNextChild(best, stats);
+
+			while (nodesInMemory > maxNodes) {
+				dropWorstLeaf();
+			}
+		}
+	}
+
+	/* Generates the most promising child of the given node that is not currently in
+	 * memory, then backs up the node's f-value if all of its children have now been
+	 * generated at least once.
+	 */
+	private void generateNextChild(Node node, SearchStatistics stats) {
+
+		int slot = bestMissingSlot(node);
+		detach(node);
+
+		int op = node.operations.get(slot);
+		PuzzleState childState = node.state.getNewState(op);
+		Node child = new Node(childState, node, slot, op);
+		int childF = Math.max(node.f, child.depth + heuristic.h(childState));
+		if (node.generated[slot]) {
+			childF = Math.max(childF, node.forgottenF[slot]);
+		} else {
+			node.generated[slot] = true;
+			node.notGenerated--;
+		}
+		/* a node this deep can never be part of a solution that fits in memory */
+		if (child.depth >= maxNodes - 1 && !childState.equals(PuzzleState.GOAL_STATE)) {
+			childF = INFINITY;
+		}
+		child.f = childF;
+
+		node.children[slot] = child;
+		node.childrenInMemory++;
+		nodesInMemory++;
+		stats.nodesGenerated(1);
+		if (node.notGenerated == 0) {
+			stats.nodeExpanded();
+		}
+
+		attach(child);
+		attach(node);
+		backUp(node);
+	}
+
+	/* Drops the least promising leaf from memory.  Its parent remembers the leaf's
+	 * f-value so that it can be regenerated later.
+	 */
+	private void dropWorstLeaf() {
+
+		Node leaf = leaves.first();
+		Node parent = leaf.parent;
+		detach(leaf);
+		detach(parent);
+
+		parent.children[leaf.slotInParent] = null;
+		parent.forgottenF[leaf.slotInParent] = leaf.f;
+		parent.childrenInMemory--;
+		nodesInMemory--;
+
+		attach(parent);
+	}
+
+	/* Once every child of a node has been generated, the best any solution through the
+	 * node can do is the best of its children, so the node's f-value is raised to the
+	 * lowest f-value of its children.  This is repeated for each ancestor whose
+	 * f-value changes as a result.
+	 */
+	private void backUp(Node node) {
+		while (node != null && node.notGenerated == 0) {
+			int newF = node.f;
+			int bestChildF = INFINITY;
+			for (int slot = 0; slot < node.children.length; slot++) {
+				int childF = (node.children[slot] != null) ? node.children[slot].f : node.forgottenF[slot];
+				bestChildF = Math.min(bestChildF, childF);
+			}
+			newF = Math.max(newF, bestChildF);
+			if (newF == node.f) {
+				return;
+			}
+			detach(node);
+			node.f = newF;
+			attach(node);
+			node = node.parent;
+		}
+	}
+
+	/* Returns the child slot of the node that is not in memory and has the lowest
+	 * f-value.  Children that have never been generated are assumed to have the
+	 * node's own f-value.
+	 */
+	private static int bestMissingSlot(Node node) {
+		int bestSlot = -1;
+		int bestF = INFINITY;
+		for (int slot = 0; slot < node.children.length; slot++) {
+			if (node.children[slot] != null) {
+				continue;
+			}
+			int slotF = node.generated[slot] ? node.forgottenF[slot] : node.f;
+			if (bestSlot == -1 || slotF < bestF) {
+				bestSlot = slot;
+				bestF = slotF;
+			}
+		}
+		return bestSlot;
+	}
+
+	/* Adds the node to the open set and the set of leaves, if it belongs in them. */
+	private void attach(Node node) {
+		int slot = bestMissingSlot(node);
+		if (slot != -1) {
+			node.openF = node.generated[slot] ? node.forgottenF[slot] : node.f;
+			open.add(node);
+		}
+		if (node.childrenInMemory == 0 && node.parent != null) {
+			leaves.add(node);
+		}
+	}
+
+	/* Removes the node from the open set and the set of leaves.  This must be done
+	 * before changing anything the two sets are ordered by.
+	 */
+	private void detach(Node node) {
+		open.remove(node);
+		leaves.remove(node);
+	}
+
+	private static List<PuzzleState> pathTo(Node node) {
+		LinkedList<PuzzleState> path = new LinkedList<>();
+		for (Node curr = node; curr != null; curr = curr.parent) {
+			path.addFirst(curr.state);
+		}
+		return path;
+	}
+
+	/* A node in the search tree.  Each node has one "slot" for each of its possible
+	 * children.  A slot is either not generated yet, holding a child in memory, or
+	 * holding the f-value of a child that was dropped from memory.
+	 */
+	private class Node {
+
+		private final PuzzleState state;
+		private final Node parent;
+		private final int slotInParent;
+		private final int depth;
+		private final long id;
+		private int f;
+		private int openF; // the f-value this node is ordered by in the open set
+
+		private final List<Integer> operations;
+		private final Node[] children;
+		private final int[] forgottenF;
+		private final boolean[] generated;
+		private int notGenerated;
+		private int childrenInMemory;
+
+		private Node(PuzzleState state, Node parent, int slotInParent, int parentOperation) {
+			this.state = state;
+			this.parent = parent;
+			this.slotInParent = slotInParent;
+			this.depth = (parent == null) ? 0 : parent.depth + 1;
+			this.id = nextId++;
+			this.operations = state.getPossibleOperations();
+			if (parentOperation != -1) {
+				operations.remove(Integer.valueOf(BoardOperations.inverseOperation(parentOperation)));
+			}
+			this.children = new Node[operations.size()];
+			this.forgottenF = new int[operations.size()];
+			this.generated = new boolean[operations.size()];
+			this.notGenerated = operations.size();
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* A finite state machine that tells a depth-first search which moves lead to
+ * a state it is sure to reach another way.  Excluding the inverse of the last
+ * move only stops paths like UD; a path that walks the blank around a 2x2
+ * block three times (12 moves) comes back to the same state, and many pairs of
+ * equally long paths (such as ULDR...  and LURD...) reach the same state too.
+ * Without a transposition table, a depth-first search explores every one of
+ * those paths separately.
+ *
+ * The machine is built by listing every move sequence up to a maximum length
+ * that keeps the blank within a 3x3 square (any other sequence is impossible
+ * on this board), shortest first and in lexicographic order among equal
+ * lengths, and working out what each one does to the board: where the blank
+ * ends up, and where every tile it touched ends up.  A sequence is
+ * redundant if an earlier sequence does exactly the same thing and keeps the
+ * blank inside the same rectangle (so it is legal whenever the later one is).
+ * Any path containing a redundant sequence can be replaced by one that is
+ * shorter, or just as long and earlier in the order, so a search that never
+ * makes a redundant sequence still finds an optimal solution.  The redundant
+ * sequences become a string-matching automaton (Aho-Corasick) whose states
+ * remember just enough of the moves made so far to spot the end of one.
+ */
+public class MovePruner {
+
+	/* returned by next() when the move completes a redundant sequence */
+	public static final int PRUNED = -1;
+
+	/* The length of the longest sequences that the default pruner looks at. */
+	public static final int DEFAULT_MAX_LENGTH = 12;
+
+	private static final int NUM_MOVES = 4;
+
+	/* the blank can never be more than this many rows or columns away from
+	 * where it was earlier on a 3x3 board */
+	private static final int MAX_SPAN = 2;
+	private static final int[] DX = { 0, 0, -1, 1 }; /* indexed by BoardOperations constant */
+	private static final int[] DY = { -1, 1, 0, 0 };
+
+	/* the default pruner, built the first time it is asked for */
+	private static class Default {
+		static final MovePruner INSTANCE = new MovePruner(DEFAULT_MAX_LENGTH);
+	}
+
+	/* transitions[state][operation] is the next state, or PRUNED */
+	private final int[][] transitions;
+	private final int numRedundant;
+
+	/* Builds a pruner from the redundant sequences of at most maxLength moves.
+	 * A maxLength of 2 only prunes inverse moves.
+	 */
+	public MovePruner(int maxLength) {
+		if (maxLength < 2 || maxLength > 24) {
+			throw new IllegalArgumentException("the maximum length must be from 2 to 24, not " + maxLength);
+		}
+		List<int[]> redundant = findRedundantSequences(maxLength);
+		this.numRedundant = redundant.size();
+		this.transitions = buildAutomaton(redundant);
+	}
+
+	/* Returns the pruner for sequences of up to DEFAULT_MAX_LENGTH moves. */
+	public static MovePruner standard() {
+		return Default.INSTANCE;
+	}
+
+	/* Returns the state of a search that has not made any moves yet. */
+	public int start() {
+		return 0;
+	}
+
+	/* Returns the state after making the given move (one of the BoardOperations
+	 * constants) in the given state, or PRUNED if the move should not be made.
+	 */
+	public int next(int state, int operation) {
+		return transitions[state][operation];
+	}
+
+	/* getters */
+
+	public int getNumStates() {
+		return transitions.length;
+	}
+
+	public int getNumRedundantSequences() {
+		return numRedundant;
+	}
+
+	/* Returns the shortest redundant sequences, meaning the ones that do not
+	 * contain a shorter redundant sequence, of up to maxLength moves.
+	 */
+	private static List<int[]> findRedundantSequences(int maxLength) {
+
+		/* a board big enough for any sequence that fits on the real one, with the
+		 * blank starting in the middle; each cell starts out holding its own index
+		 * as its tile */
+		int side = 2 * MAX_SPAN + 1;
+		char[] cells = new char[side * side];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = (char) i;
+		}
+		int center = MAX_SPAN * side + MAX_SPAN;
+
+		/* the effects of the sequences that are not redundant, along with the
+		 * rectangle each one keeps the blank in (minX, maxX, minY, maxY) */
+		Map<String, List<int[]>> effects = new HashMap<>();
+		effects.computeIfAbsent(effect(cells, center), key -> new ArrayList<>()).add(new int[] { 0, 0, 0, 0 });
+
+		Set<Long> redundantCodes = new HashSet<>();
+		List<int[]> redundant = new ArrayList<>();
+
+		/* sequences are kept as 2 bits per move, first move highest, so numeric
+		 * order within a length is lexicographic order */
+		long[] level = { 0 };
+		for (int length = 1; length <= maxLength; length++) {
+			long[] nextLevel = new long[level.length * NUM_MOVES];
+			int count = 0;
+			for (long prefix : level) {
+				for (int move = 0; move < NUM_MOVES; move++) {
+					long code = (prefix << 2) | move;
+					if (endsRedundant(code, length, redundantCodes)) {
+						continue;
+					}
+					int[] moves = decode(code, length);
+
+					int[] box = new int[4];
+					int x = 0;
+					int y = 0;
+					for (int m : moves) {
+						x += DX[m];
+						y += DY[m];
+						box[0] = Math.min(box[0], x);
+						box[1] = Math.max(box[1], x);
+						box[2] = Math.min(box[2], y);
+						box[3] = Math.max(box[3], y);
+					}
+					if (box[1] - box[0] > MAX_SPAN || box[3] - box[2] > MAX_SPAN) {
+						continue; /* the blank would leave the board wherever it started */
+					}
+
+					/* play the sequence, then undo it to leave the board as it was */
+					int blank = center;
+					for (int m : moves) {
+						int target = blank + DY[m] * side + DX[m];
+						cells[blank] = cells[target];
+						blank = target;
+					}
+					cells[blank] = (char) center;
+					String key = effect(cells, blank);
+					for (int i = moves.length - 1; i >= 0; i--) {
+						int target = blank - DY[moves[i]] * side - DX[moves[i]];
+						cells[blank] = cells[target];
+						blank = target;
+					}
+					cells[blank] = (char) center;
+
+					List<int[]> earlier = effects.computeIfAbsent(key, k -> new ArrayList<>());
+					boolean isRedundant = false;
+					for (int[] other : earlier) {
+						if (other[0] >= box[0] && other[1] <= box[1] && other[2] >= box[2] && other[3] <= box[3]) {
+							isRedundant = true;
+							break;
+						}
+					}
+					if (isRedundant) {
+						redundantCodes.add(key(code, length));
+						redundant.add(moves);
+					} else {
+						earlier.add(box);
+						nextLevel[count++] = code;
+					}
+				}
+			}
+			level = Arrays.copyOf(nextLevel, count);
+		}
+		return redundant;
+	}
+
+	/* Returns a description of what the moves did to the board: which tile is in
+	 * each cell, and where the blank is.  Two sequences that leave the same
+	 * description did exactly the same thing.
+	 */
+	private static String effect(char[] cells, int blank) {
+		return new String(cells) + (char) blank;
+	}
+
+	/* Returns whether a suffix of the sequence is already known to be redundant. */
+	private static boolean endsRedundant(long code, int length, Set<Long> redundantCodes) {
+		for (int suffix = 2; suffix < length; suffix++) {
+			if (redundantCodes.contains(key(code & ((1L << (2 * suffix)) - 1), suffix))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long key(long code, int length) {
+		return ((long) length << 56) | code;
+	}
+
+	private static int[] decode(long code, int length) {
+		int[] moves = new int[length];
+		for (int i = length - 1; i >= 0; i--) {
+			moves[i] = (int) (code & 3);
+			code >>>= 2;
+		}
+		return moves;
+	}
+
+	/* Builds the transition table of an automaton that reaches PRUNED exactly
+	 * when the moves made so far end with one of the given sequences.  None of
+	 * the sequences contains another, so a state only has to be pruned when the
+	 * sequence ending there is one of them.
+	 */
+	private static int[][] buildAutomaton(List<int[]> sequences) {
+
+		/* a trie of the sequences; node 0 is the root */
+		List<int[]> children = new ArrayList<>();
+		List<Boolean> terminal = new ArrayList<>();
+		children.add(newNode());
+		terminal.add(false);
+		for (int[] sequence : sequences) {
+			int node = 0;
+			for (int move : sequence) {
+				if (children.get(node)[move] == -1) {
+					children.get(node)[move] = children.size();
+					children.add(newNode());
+					terminal.add(false);
+				}
+				node = children.get(node)[move];
+			}
+			terminal.set(node, true);
+		}
+
+		/* number the nodes that are not the end of a sequence; those are the states */
+		int[] stateOf = new int[children.size()];
+		int numStates = 0;
+		for (int node = 0; node < children.size(); node++) {
+			stateOf[node] = terminal.get(node) ? PRUNED : numStates++;
+		}
+
+		/* fill in the moves in breadth-first order, following the failure link
+		 * (the longest proper suffix that is also in the trie) for moves that are
+		 * not in the trie */
+		int[][] goTo = new int[children.size()][NUM_MOVES];
+		int[] failure = new int[children.size()];
+		int[] queue = new int[children.size()];
+		int head = 0;
+		int tail = 0;
+		for (int move = 0; move < NUM_MOVES; move++) {
+			int child = children.get(0)[move];
+			if (child == -1) {
+				goTo[0][move] = 0;
+			} else {
+				goTo[0][move] = child;
+				failure[child] = 0;
+				queue[tail++] = child;
+			}
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			if (terminal.get(node)) {
+				continue;
+			}
+			for (int move = 0; move < NUM_MOVES; move++) {
+				int child = children.get(node)[move];
+				if (child == -1) {
+					goTo[node][move] = goTo[failure[node]][move];
+				} else {
+					goTo[node][move] = child;
+					failure[child] = goTo[failure[node]][move];
+					queue[tail++] = child;
+				}
+			}
+		}
+
+		int[][] transitions = new int[numStates][NUM_MOVES];
+		for (int node = 0; node < children.size(); node++) {
+			if (stateOf[node] != PRUNED) {
+				for (int move = 0; move < NUM_MOVES; move++) {
+					transitions[stateOf[node]][move] = stateOf[goTo[node][move]];
+				}
+			}
+		}
+		return transitions;
+	}
+
+	private static int[] newNode() {
+		int[] node = new int[NUM_MOVES];
+		Arrays.fill(node, -1);
+		return node;
+	}
+
+}
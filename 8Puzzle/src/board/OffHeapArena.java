@@ -0,0 +1,178 @@
+package board;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+/* A group of blocks of native memory (memory outside the Java heap) that are
+ * all released together when the arena is closed.  Nothing stored here is seen
+ * by the garbage collector, so a search can keep millions of nodes in an arena
+ * without making collections slower, and the memory is freed as soon as a
+ * block is freed or the search finishes, instead of whenever a collection
+ * happens to run.
+ *
+ * The blocks come from sun.misc.Unsafe.allocateMemory(), so unlike direct
+ * ByteBuffers they are not limited by -XX:MaxDirectMemorySize and never make
+ * the JVM run a collection to find memory it could give back.  Unsafe is
+ * looked up by name and called through method handles, which the JIT compiles
+ * down to plain memory accesses, so that the build does not depend on (and
+ * warn about) an internal API.
+ *
+ * Arenas are meant to be used by a single thread inside a try-with-resources
+ * block.  Addresses returned by allocate() must not be used after the block
+ * is freed or the arena is closed.
+ */
+final class OffHeapArena implements AutoCloseable {
+
+	private static final MethodHandle ALLOCATE_MEMORY;
+	private static final MethodHandle FREE_MEMORY;
+	private static final MethodHandle SET_MEMORY;
+	private static final MethodHandle GET_LONG;
+	private static final MethodHandle PUT_LONG;
+	private static final MethodHandle COPY_MEMORY;
+
+	/* static initializer to get access to native memory */
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			ALLOCATE_MEMORY = lookup.unreflect(unsafeClass.getMethod("allocateMemory", long.class)).bindTo(unsafe);
+			FREE_MEMORY = lookup.unreflect(unsafeClass.getMethod("freeMemory", long.class)).bindTo(unsafe);
+			SET_MEMORY = lookup.unreflect(unsafeClass.getMethod("setMemory", long.class, long.class, byte.class))
+					.bindTo(unsafe);
+			GET_LONG = lookup.unreflect(unsafeClass.getMethod("getLong", long.class)).bindTo(unsafe);
+			PUT_LONG = lookup.unreflect(unsafeClass.getMethod("putLong", long.class, long.class)).bindTo(unsafe);
+			COPY_MEMORY = lookup.unreflect(unsafeClass.getMethod("copyMemory", long.class, long.class, long.class))
+					.bindTo(unsafe);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Map<Long, Long> blocks = new HashMap<>(); /* address to size, for every block not yet freed */
+	private long bytesAllocated = 0;
+	private long peakBytesAllocated = 0;
+	private boolean closed = false;
+
+	/* Returns the address of a new block of the given number of bytes, all set
+	 * to zero.
+	 */
+	long allocate(long bytes) {
+		checkOpen();
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("cannot allocate a block of " + bytes + " bytes");
+		}
+		long address;
+		try {
+			address = (long) ALLOCATE_MEMORY.invokeExact(bytes);
+			SET_MEMORY.invokeExact(address, bytes, (byte) 0);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+		blocks.put(address, bytes);
+		track(bytes);
+		return address;
+	}
+
+	/* Frees a block returned by allocate() right away, so the memory can be
+	 * used again by later allocations.  Blocks that are not freed this way are
+	 * freed when the arena is closed.
+	 */
+	void free(long address) {
+		checkOpen();
+		Long bytes = blocks.remove(address);
+		if (bytes == null) {
+			throw new IllegalArgumentException("the block was not allocated by this arena, or was already freed");
+		}
+		freeMemory(address);
+		track(-bytes);
+	}
+
+	/* getters */
+
+	/* the number of bytes in blocks that have not been freed yet */
+	long getBytesAllocated() {
+		return bytesAllocated;
+	}
+
+	long getPeakBytesAllocated() {
+		return peakBytesAllocated;
+	}
+
+	/* Frees every block that is still allocated.  Closing an arena twice has no
+	 * effect.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (long address : blocks.keySet()) {
+			freeMemory(address);
+		}
+		blocks.clear();
+		bytesAllocated = 0;
+	}
+
+	/* accessors for memory inside the arena's blocks */
+
+	static long getLong(long address) {
+		try {
+			return (long) GET_LONG.invokeExact(address);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	static void putLong(long address, long value) {
+		try {
+			PUT_LONG.invokeExact(address, value);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	static void copy(long from, long to, long bytes) {
+		try {
+			COPY_MEMORY.invokeExact(from, to, bytes);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void freeMemory(long address) {
+		try {
+			FREE_MEMORY.invokeExact(address);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void track(long bytes) {
+		bytesAllocated += bytes;
+		peakBytesAllocated = Math.max(peakBytesAllocated, bytesAllocated);
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("the arena has been closed");
+		}
+	}
+
+}
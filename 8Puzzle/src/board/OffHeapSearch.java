@@ -0,0 +1,592 @@
+package board;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* The same A* search as PuzzleSolver.solve(), but with the open list, the
+ * table of best g-values, and the nodes themselves all kept in native memory
+ * instead of as Java objects.  A search that discovers tens of millions of
+ * states creates tens of millions of SearchNode and PuzzleState objects, and
+ * the garbage collector has to trace all of them over and over, which leads
+ * to long pauses.  Here each node is two longs in an OffHeapArena, boards are
+ * handled in the packed form returned by PuzzleState.getPacked(), and the
+ * only objects created are the PuzzleStates of the solution itself.  The
+ * arena is closed when solve() returns, even if it throws, which frees all of
+ * the native memory right away.
+ *
+ * The three structures are:
+ *
+ *   nodes   an array of two-long records (board, index of the parent node,
+ *           g-value, and position of the blank).
+ *   open    the open list heap of PackedBoards.
+ *   bestG   the bestG table of PackedBoards, with every entry tagged 1, so
+ *           that the zeros of new memory are empty slots.
+ *
+ * A search can also be given a checkpoint file.  Every so often it then copies
+ * the three structures, its statistics, and the highest f-value it has taken
+ * off the open list (a lower bound on the length of the solution) into a
+ * Checkpoint, and a background thread writes it to the file, replacing the
+ * last one in a single step.  The Checkpoint keeps its copy in pages of the
+ * same arena, which are reused for every checkpoint of the search and written
+ * to the file a page at a time, so the search only stops for a few bulk
+ * memory copies and nothing the size of the search is put on the Java heap.  A
+ * checkpoint that cannot be written is counted in the SearchStatistics, and
+ * the search tries again at the next one.  If the process is stopped,
+ * resume() reads the file back and carries on with the search as if it had
+ * never stopped.
+ */
+public class OffHeapSearch {
+
+	/* layout of the second long of a node record, after the parent's index */
+	private static final int INFO_G_SHIFT = 32;
+	private static final int INFO_BLANK_SHIFT = 40;
+
+	/* how many expansions pass between checks of whether a checkpoint is due */
+	private static final int CHECKPOINT_CHECK_INTERVAL = 1 << 10;
+
+	private final Heuristic heuristic;
+	private final Path checkpointFile; /* null if checkpoints are not written */
+	private final long checkpointIntervalMillis;
+
+	public OffHeapSearch(Heuristic heuristic) {
+		this(heuristic, null, 0);
+	}
+
+	/* Creates a search that writes a checkpoint of its progress to the given
+	 * file about every checkpointIntervalMillis milliseconds, so that it can be
+	 * continued with resume() if it is stopped.
+	 */
+	public OffHeapSearch(Heuristic heuristic, Path checkpointFile, long checkpointIntervalMillis) {
+		this.heuristic = heuristic;
+		this.checkpointFile = checkpointFile;
+		this.checkpointIntervalMillis = checkpointIntervalMillis;
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		try (OffHeapArena arena = new OffHeapArena()) {
+
+			NodeStore nodes = new NodeStore(arena);
+			OpenHeap open = new OpenHeap(arena);
+			BestGTable bestG = new BestGTable(arena);
+
+			long start = initialState.getPacked();
+			int root = nodes.add(start, -1, 0, initialState.getBlankPosition());
+			bestG.offer(start, 0);
+			open.push(PackedBoards.entry(heuristic.h(initialState), 0, root));
+
+			return search(arena, start, nodes, open, bestG, 0, 0, 0, stats);
+		}
+	}
+
+	/* Continues the search saved in the checkpoint file and returns its
+	 * solution.  The counts in the checkpoint are added to stats.  The heuristic
+	 * must be the same one the search was started with, or an
+	 * IllegalArgumentException is thrown.
+	 */
+	public List<PuzzleState> resume(SearchStatistics stats) {
+		if (checkpointFile == null) {
+			throw new IllegalStateException("this search has no checkpoint file");
+		}
+		try (OffHeapArena arena = new OffHeapArena()) {
+
+			/* the structures are read from the file straight into the arena */
+			Header header;
+			NodeStore nodes;
+			OpenHeap open;
+			BestGTable bestG;
+			try (FileChannel in = FileChannel.open(checkpointFile, StandardOpenOption.READ)) {
+				header = Header.read(checkpointFile, in);
+				if (!header.heuristic.equals(heuristic.toString())) {
+					throw new IllegalArgumentException("the checkpoint was made with the " + header.heuristic
+							+ " heuristic, not " + heuristic);
+				}
+				nodes = new NodeStore(arena, in, header.numNodes);
+				open = new OpenHeap(arena, in, header.openSize);
+				bestG = new BestGTable(arena, in, header.bestGCapacity, header.bestGSize);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			stats.add(header.nodesExpanded, header.nodesGenerated);
+			return search(arena, header.start, nodes, open, bestG, header.lowerBound,
+					header.nodesExpanded, header.nodesGenerated, stats);
+		}
+	}
+
+	/* Runs A* on the given structures until the solved state comes off the open
+	 * list, writing checkpoints along the way if a checkpoint file was given.
+	 * lowerBound is the highest f-value taken off the open list so far, and
+	 * the two counts are the work done before the search was resumed, which is
+	 * already included in stats.  The checkpoint file is deleted once the
+	 * solution has been found.
+	 */
+	private List<PuzzleState> search(OffHeapArena arena, long start, NodeStore nodes, OpenHeap open,
+			BestGTable bestG, int lowerBound, long previouslyExpanded, long previouslyGenerated,
+			SearchStatistics stats) {
+
+		final long goal = PuzzleState.GOAL_STATE.getPacked();
+		long[] childBoards = new long[4];
+		int[] childBlanks = new int[4];
+		int[] childH = new int[4];
+
+		/* checkpoints are written by a background thread from a copy of the
+		 * structures, so the search only pauses for as long as the copy takes */
+		ExecutorService writer = null;
+		Checkpoint checkpoint = null;
+		Future<?> pendingWrite = null;
+		long nextCheckpoint = System.currentTimeMillis() + checkpointIntervalMillis;
+		long expanded = 0;
+		long baseExpanded = stats.getNodesExpanded() - previouslyExpanded;
+		long baseGenerated = stats.getNodesGenerated() - previouslyGenerated;
+
+		try {
+			while (!open.isEmpty()) {
+
+				long top = open.pop();
+				int node = PackedBoards.entryNode(top);
+				long board = nodes.board(node);
+				int g = nodes.g(node);
+
+				/* skip nodes for boards that were reached again with a lower g-value */
+				if (g > bestG.get(board)) {
+					continue;
+				}
+				if (board == goal) {
+					if (pendingWrite != null) {
+						awaitWrite(pendingWrite, stats);
+						pendingWrite = null;
+					}
+					if (checkpointFile != null) {
+						Files.deleteIfExists(checkpointFile);
+					}
+					return nodes.path(node);
+				}
+				PuzzleSolver.checkCancelled();
+				lowerBound = Math.max(lowerBound, PackedBoards.entryF(top));
+
+				if (checkpointFile != null && ++expanded % CHECKPOINT_CHECK_INTERVAL == 0
+						&& System.currentTimeMillis() >= nextCheckpoint
+						&& (pendingWrite == null || pendingWrite.isDone())) {
+					if (pendingWrite != null) {
+						awaitWrite(pendingWrite, stats);
+					}
+					if (writer == null) {
+						writer = Executors.newSingleThreadExecutor(runnable -> {
+							Thread thread = new Thread(runnable, "checkpoint-writer");
+							thread.setDaemon(true);
+							return thread;
+						});
+						checkpoint = new Checkpoint(arena);
+					}
+					/* put the node back so the checkpoint holds the whole open list */
+					open.push(top);
+					checkpoint.take(new Header(start, heuristic.toString(), stats.getNodesExpanded() - baseExpanded,
+							stats.getNodesGenerated() - baseGenerated, lowerBound, nodes.size(), open.size(),
+							bestG.capacity(), bestG.size()), nodes, open, bestG);
+					open.pop();
+					Checkpoint taken = checkpoint;
+					pendingWrite = writer.submit(() -> {
+						taken.write(checkpointFile);
+						return null;
+					});
+					nextCheckpoint = System.currentTimeMillis() + checkpointIntervalMillis;
+				}
+
+				/* generate every child except the parent's board */
+				int parent = nodes.parent(node);
+				long parentBoard = (parent == -1) ? 0 : nodes.board(parent);
+				int count = PackedBoards.children(board, nodes.blank(node), parentBoard, childBoards, childBlanks);
+				stats.nodeExpanded();
+				stats.nodesGenerated(count);
+
+				heuristic.evaluateAll(childBoards, count, childH);
+				int childG = g + 1;
+				if (childG > PackedBoards.MAX_G) {
+					throw new IllegalStateException("the search went deeper than " + PackedBoards.MAX_G + " moves");
+				}
+				for (int i = 0; i < count; i++) {
+					if (bestG.offer(childBoards[i], childG)) {
+						int childNode = nodes.add(childBoards[i], node, childG, childBlanks[i]);
+						open.push(PackedBoards.entry(childG + childH[i], childG, childNode));
+					}
+				}
+			}
+
+			throw new IllegalArgumentException(PuzzleState.fromPacked(start) + "\ncannot be solved");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (writer != null) {
+				/* let a checkpoint that is being written finish, so the file is never
+				 * lost and the arena is not closed under it */
+				writer.shutdown();
+				if (pendingWrite != null) {
+					awaitWrite(pendingWrite, stats);
+				}
+			}
+		}
+	}
+
+	/* Waits for a checkpoint write to end, even if this thread is interrupted,
+	 * so that a write can never land after the search has returned, and counts
+	 * it in stats as written or failed.  The interrupt status is kept.
+	 */
+	private static void awaitWrite(Future<?> future, SearchStatistics stats) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				future.get();
+				stats.checkpointWritten();
+				break;
+			} catch (ExecutionException e) {
+				stats.checkpointFailed(e.getCause());
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* The node records, two longs per node: the board, then the index of the
+	 * parent node in the low 32 bits with the g-value and the position of the
+	 * blank above it.
+	 */
+	private static class NodeStore {
+
+		private final PagedLongArray records;
+		private int size = 0;
+
+		NodeStore(OffHeapArena arena) {
+			this.records = new PagedLongArray(arena, 0);
+		}
+
+		/* Reads the given number of nodes written by a Checkpoint. */
+		NodeStore(OffHeapArena arena, ReadableByteChannel in, int size) throws IOException {
+			this.records = new PagedLongArray(arena, 0);
+			this.records.read(in, 2L * size);
+			this.size = size;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/* Copies every record to the start of the given array. */
+		void copyTo(PagedLongArray target) {
+			records.copyTo(target, 2L * size);
+		}
+
+		/* Adds a node and returns its index. */
+		int add(long board, int parent, int g, int blank) {
+			if (size == Integer.MAX_VALUE) {
+				throw new IllegalStateException("too many nodes");
+			}
+			long index = 2L * size;
+			records.ensureCapacity(index + 2);
+			records.set(index, board);
+			records.set(index + 1, (parent & 0xFFFFFFFFL) | ((long) g << INFO_G_SHIFT)
+					| ((long) blank << INFO_BLANK_SHIFT));
+			return size++;
+		}
+
+		long board(int node) {
+			return records.get(2L * node);
+		}
+
+		int parent(int node) {
+			return (int) info(node);
+		}
+
+		int g(int node) {
+			return (int) (info(node) >>> INFO_G_SHIFT) & PackedBoards.MAX_G;
+		}
+
+		int blank(int node) {
+			return (int) (info(node) >>> INFO_BLANK_SHIFT) & 0xF;
+		}
+
+		/* Returns the states from the root to the given node, in order. */
+		List<PuzzleState> path(int node) {
+			LinkedList<PuzzleState> path = new LinkedList<>();
+			for (int curr = node; curr != -1; curr = parent(curr)) {
+				path.addFirst(PuzzleState.fromPacked(board(curr)));
+			}
+			return path;
+		}
+
+		private long info(int node) {
+			return records.get(2L * node + 1);
+		}
+	}
+
+	/* A binary min-heap of longs.  It grows a page at a time when it fills up. */
+	private static class OpenHeap {
+
+		private final PagedLongArray entries;
+		private long size = 0;
+
+		OpenHeap(OffHeapArena arena) {
+			this.entries = new PagedLongArray(arena, PagedLongArray.PAGE_SIZE);
+		}
+
+		/* Reads the given number of entries written by a Checkpoint. */
+		OpenHeap(OffHeapArena arena, ReadableByteChannel in, long size) throws IOException {
+			this.entries = new PagedLongArray(arena, PagedLongArray.PAGE_SIZE);
+			this.entries.read(in, size);
+			this.size = size;
+		}
+
+		long size() {
+			return size;
+		}
+
+		/* Copies the entries, in heap order, to the start of the given array. */
+		void copyTo(PagedLongArray target) {
+			entries.copyTo(target, size);
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void push(long value) {
+			entries.ensureCapacity(size + 1);
+			PackedBoards.push(entries, size++, value);
+		}
+
+		long pop() {
+			return PackedBoards.pop(entries, size--);
+		}
+	}
+
+	/* The table of the lowest g-value each board has been reached with.  The
+	 * table doubles in size when it is half full.
+	 */
+	private static class BestGTable {
+
+		/* the tag of every entry; new pages are all zeros, so they read as empty */
+		private static final long TAG = 1;
+
+		private final OffHeapArena arena;
+		private long capacity = PagedLongArray.PAGE_SIZE; /* always a power of 2 */
+		private PagedLongArray slots;
+		private long size = 0;
+
+		BestGTable(OffHeapArena arena) {
+			this.arena = arena;
+			this.slots = new PagedLongArray(arena, capacity);
+		}
+
+		/* Reads a table written by a Checkpoint.  The slots are read as they are,
+		 * since the capacity is the same.
+		 */
+		BestGTable(OffHeapArena arena, ReadableByteChannel in, long capacity, long size) throws IOException {
+			this.arena = arena;
+			this.capacity = capacity;
+			this.slots = new PagedLongArray(arena, capacity);
+			this.slots.read(in, capacity);
+			this.size = size;
+		}
+
+		long capacity() {
+			return capacity;
+		}
+
+		long size() {
+			return size;
+		}
+
+		/* Copies every slot, including the empty ones, to the start of the given
+		 * array.
+		 */
+		void copyTo(PagedLongArray target) {
+			slots.copyTo(target, capacity);
+		}
+
+		/* Returns the lowest g-value the board has been reached with, or
+		 * Integer.MAX_VALUE if it has not been reached.
+		 */
+		int get(long board) {
+			long value = slots.get(PackedBoards.probe(slots, capacity, board, TAG));
+			return PackedBoards.isEmpty(value, TAG) ? Integer.MAX_VALUE : PackedBoards.tableG(value);
+		}
+
+		/* Records that the board was reached with the given g-value.  Returns
+		 * false (and changes nothing) if it was already reached with a g-value
+		 * that is no higher.
+		 */
+		boolean offer(long board, int g) {
+			long slot = PackedBoards.probe(slots, capacity, board, TAG);
+			long value = slots.get(slot);
+			if (!PackedBoards.isEmpty(value, TAG)) {
+				if (PackedBoards.tableG(value) <= g) {
+					return false;
+				}
+				slots.set(slot, PackedBoards.tableEntry(board, g, TAG));
+				return true;
+			}
+			slots.set(slot, PackedBoards.tableEntry(board, g, TAG));
+			size++;
+			if (2 * size > capacity) {
+				grow();
+			}
+			return true;
+		}
+
+		private void grow() {
+			long biggerCapacity = capacity * 2;
+			PagedLongArray bigger = new PagedLongArray(arena, biggerCapacity);
+			for (long slot = 0; slot < capacity; slot++) {
+				long value = slots.get(slot);
+				if (!PackedBoards.isEmpty(value, TAG)) {
+					long board = value & PackedBoards.BOARD_MASK;
+					bigger.set(PackedBoards.probe(bigger, biggerCapacity, board, TAG), value);
+				}
+			}
+			slots.free();
+			slots = bigger;
+			capacity = biggerCapacity;
+		}
+	}
+
+	/* The counts and sizes at the start of a checkpoint file. */
+	private static class Header {
+
+		private static final int MAGIC = 0x38505A43; /* "8PZC" */
+		/* 2: node records as two longs (board, parent | g | blank)
+		 * 3: table entries laid out by PackedBoards */
+		private static final int VERSION = 3;
+
+		final long start;
+		final String heuristic;
+		final long nodesExpanded;
+		final long nodesGenerated;
+		final int lowerBound;
+		final int numNodes;
+		final long openSize;
+		final long bestGCapacity;
+		final long bestGSize;
+
+		Header(long start, String heuristic, long nodesExpanded, long nodesGenerated, int lowerBound,
+				int numNodes, long openSize, long bestGCapacity, long bestGSize) {
+			this.start = start;
+			this.heuristic = heuristic;
+			this.nodesExpanded = nodesExpanded;
+			this.nodesGenerated = nodesGenerated;
+			this.lowerBound = lowerBound;
+			this.numNodes = numNodes;
+			this.openSize = openSize;
+			this.bestGCapacity = bestGCapacity;
+			this.bestGSize = bestGSize;
+		}
+
+		/* Returns the header as the bytes it is written to a file as. */
+		ByteBuffer toBytes() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(start);
+				out.writeUTF(heuristic);
+				out.writeLong(nodesExpanded);
+				out.writeLong(nodesGenerated);
+				out.writeInt(lowerBound);
+				out.writeInt(numNodes);
+				out.writeInt((int) openSize);
+				out.writeInt((int) bestGCapacity);
+				out.writeLong(bestGSize);
+			}
+			return ByteBuffer.wrap(bytes.toByteArray());
+		}
+
+		/* Reads the header at the start of the file, leaving the channel just
+		 * after it.
+		 */
+		static Header read(Path file, ReadableByteChannel channel) throws IOException {
+			/* not buffered, so that nothing past the header is read */
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a checkpoint of an off-heap search");
+			}
+			return new Header(in.readLong(), in.readUTF(), in.readLong(), in.readLong(), in.readInt(),
+					in.readInt(), in.readInt(), in.readInt(), in.readLong());
+		}
+	}
+
+	/* A copy of a search in progress, kept so that it can be written out while
+	 * the search carries on.  The copy is made into pages of the search's own
+	 * arena, which are kept and reused for the next checkpoint, and only grow
+	 * when the search has grown.  The file holds a Header followed by the nodes,
+	 * the open list, and the table, all as big-endian longs.
+	 */
+	private static class Checkpoint {
+
+		private final PagedLongArray nodes;
+		private final PagedLongArray open;
+		private final PagedLongArray bestG;
+		private Header header;
+
+		Checkpoint(OffHeapArena arena) {
+			this.nodes = new PagedLongArray(arena, 0);
+			this.open = new PagedLongArray(arena, 0);
+			this.bestG = new PagedLongArray(arena, 0);
+		}
+
+		/* Replaces the copy with the current state of the search.  The last
+		 * write() must have ended.
+		 */
+		void take(Header header, NodeStore nodes, OpenHeap open, BestGTable bestG) {
+			this.header = header;
+			nodes.copyTo(this.nodes);
+			open.copyTo(this.open);
+			bestG.copyTo(this.bestG);
+		}
+
+		/* Writes the checkpoint to a temporary file next to the given one, then
+		 * moves it over the given one, so the file always holds a whole checkpoint.
+		 */
+		void write(Path file) throws IOException {
+			Path parent = file.toAbsolutePath().getParent();
+			Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try {
+				try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+					ByteBuffer bytes = header.toBytes();
+					while (bytes.hasRemaining()) {
+						out.write(bytes);
+					}
+					nodes.write(out, 2L * header.numNodes);
+					open.write(out, header.openSize);
+					bestG.write(out, header.bestGCapacity);
+				}
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		}
+	}
+
+}
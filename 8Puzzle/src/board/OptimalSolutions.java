@@ -0,0 +1,263 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/* Describes every optimal solution of a PuzzleState, found with a single A*
+ * search instead of one search per solution.
+ *
+ * The search keeps going after the solved state is first reached, until every
+ * state that could lie on an optimal solution has been expanded.  Along the way,
+ * each state records its g-value and the number of shortest paths that reach it
+ * from the scrambled state.  Since the states are expanded in order of f-value
+ * (and g-value among ties), every state's count is final by the time it is
+ * expanded, so the count for a state is just the sum of the counts of its
+ * neighbors with a g-value one lower.  The count for the solved state is the
+ * number of distinct optimal solutions.
+ *
+ * The solutions themselves are produced lazily by walking backwards from the
+ * solved state through neighbors whose g-value is one lower, which always leads
+ * back to the scrambled state along a shortest path.
+ *
+ * This requires a consistent heuristic (one whose value never changes by more
+ * than 1 per move), which is the case for both heuristics in this package.
+ */
+public class OptimalSolutions {
+
+	private final Map<PuzzleState, Record> records;
+	private final int optimalLength;
+	private final long count;
+
+	private OptimalSolutions(Map<PuzzleState, Record> records, int optimalLength) {
+		this.records = records;
+		this.optimalLength = optimalLength;
+		this.count = records.get(PuzzleState.GOAL_STATE).count;
+	}
+
+	/* Runs the search for the given PuzzleState.  An IllegalArgumentException is
+	 * thrown if the heuristic turns out not to be consistent, since the counts would
+	 * be wrong in that case.
+	 */
+	public static OptimalSolutions find(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+
+		PuzzleState start = initialState;
+		Map<PuzzleState, Record> records = new HashMap<>();
+		PriorityQueue<Entry> openList = new PriorityQueue<>();
+
+		Record startRecord = new Record(start, 0, 1);
+		records.put(start, startRecord);
+		openList.add(new Entry(startRecord, heuristic.h(start)));
+		int optimalLength = -1;
+
+		while (!openList.isEmpty()) {
+
+			Entry entry = openList.remove();
+			Record record = entry.record;
+			if (record.expanded || entry.g != record.g) {
+				continue; // a stale entry, the state was reached again with a lower g-value
+			}
+			/* every state with an f-value up to the optimal length can be on an optimal solution */
+			if (optimalLength != -1 && entry.f > optimalLength) {
+				break;
+			}
+			record.expanded = true;
+
+			if (record.state.equals(PuzzleState.GOAL_STATE)) {
+				optimalLength = record.g;
+				continue;
+			}
+
+			stats.nodeExpanded();
+			for (PuzzleState neighbor : record.state.neighbors()) {
+				int g = record.g + 1;
+				Record neighborRecord = records.get(neighbor);
+
+				if (neighborRecord == null) {
+					neighborRecord = new Record(neighbor, g, record.count);
+					records.put(neighbor, neighborRecord);
+					openList.add(new Entry(neighborRecord, g + heuristic.h(neighbor)));
+					stats.nodesGenerated(1);
+				} else if (g < neighborRecord.g) {
+					if (neighborRecord.expanded) {
+						throw new IllegalArgumentException(heuristic + " is not a consistent heuristic");
+					}
+					neighborRecord.g = g;
+					neighborRecord.count = record.count;
+					openList.add(new Entry(neighborRecord, g + heuristic.h(neighbor)));
+				} else if (g == neighborRecord.g) {
+					if (neighborRecord.expanded) {
+						throw new IllegalArgumentException(heuristic + " is not a consistent heuristic");
+					}
+					neighborRecord.count += record.count;
+				}
+			}
+		}
+
+		if (optimalLength == -1) {
+			throw new IllegalArgumentException("the puzzle cannot be solved:\n" + initialState);
+		}
+		return new OptimalSolutions(records, optimalLength);
+	}
+
+	/* getters */
+
+	/* Returns the number of moves in an optimal solution. */
+	public int getOptimalLength() {
+		return optimalLength;
+	}
+
+	/* Returns the number of distinct optimal solutions. */
+	public long count() {
+		return count;
+	}
+
+	/* Returns a Stream of every optimal solution, each in the same form as the List
+	 * returned by PuzzleSolver.solve().  The solutions are generated one at a time
+	 * as the Stream is consumed, so only one of them is held in memory at once.
+	 */
+	public Stream<List<PuzzleState>> stream() {
+		Iterator<List<PuzzleState>> iterator = new SolutionIterator();
+		return StreamSupport.stream(Spliterators.spliterator(iterator, count,
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED), false);
+	}
+
+	/* Returns the neighbors of the given state that are one move closer to the
+	 * scrambled state along a shortest path.
+	 */
+	private List<PuzzleState> predecessors(PuzzleState state) {
+		int g = records.get(state).g;
+		List<PuzzleState> predecessors = new ArrayList<>(4);
+		for (PuzzleState neighbor : state.neighbors()) {
+			Record record = records.get(neighbor);
+			if (record != null && record.expanded && record.g == g - 1) {
+				predecessors.add(record.state);
+			}
+		}
+		return predecessors;
+	}
+
+	/* Produces the solutions with a depth-first walk backwards from the solved
+	 * state.  The walk is kept on an explicit stack so that it can be paused
+	 * after each solution.
+	 */
+	private class SolutionIterator implements Iterator<List<PuzzleState>> {
+
+		/* path.get(i) is a board i moves before the solved state, and
+		 * choices.get(i) holds the predecessors of path.get(i) still to be tried.
+		 */
+		private final LinkedList<PuzzleState> path = new LinkedList<>();
+		private final LinkedList<LinkedList<PuzzleState>> choices = new LinkedList<>();
+		private List<PuzzleState> next;
+
+		private SolutionIterator() {
+			path.add(PuzzleState.GOAL_STATE);
+			choices.add(new LinkedList<>(predecessors(PuzzleState.GOAL_STATE)));
+			if (optimalLength == 0) {
+				next = new ArrayList<>(path);
+				path.clear();
+				choices.clear();
+			} else {
+				advance();
+			}
+		}
+
+		/* Moves the walk forward until it reaches the scrambled state or runs out
+		 * of paths.
+		 */
+		private void advance() {
+			next = null;
+			while (!choices.isEmpty()) {
+				LinkedList<PuzzleState> options = choices.getLast();
+				if (options.isEmpty()) {
+					choices.removeLast();
+					path.removeLast();
+					continue;
+				}
+				PuzzleState predecessor = options.removeFirst();
+				if (path.size() == optimalLength) { // predecessor is the scrambled state
+					List<PuzzleState> boards = new ArrayList<>(path);
+					boards.add(predecessor);
+					next = reversed(boards);
+					return;
+				}
+				path.addLast(predecessor);
+				choices.addLast(new LinkedList<>(predecessors(predecessor)));
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public List<PuzzleState> next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			List<PuzzleState> solution = next;
+			advance();
+			return solution;
+		}
+	}
+
+	private static List<PuzzleState> reversed(List<PuzzleState> list) {
+		LinkedList<PuzzleState> reversed = new LinkedList<>();
+		for (PuzzleState state : list) {
+			reversed.addFirst(state);
+		}
+		return reversed;
+	}
+
+	/* What the search knows about a single board. */
+	private static class Record {
+
+		private final PuzzleState state;
+		private int g;
+		private long count; // the number of shortest paths from the scrambled state
+		private boolean expanded;
+
+		private Record(PuzzleState state, int g, long count) {
+			this.state = state;
+			this.g = g;
+			this.count = count;
+		}
+	}
+
+	/* An entry in the open list.  Entries are ordered by f-value, and then by
+	 * g-value so that a state is always expanded after the neighbors it can be
+	 * reached from with the same f-value.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		private final Record record;
+		private final int g;
+		private final int f;
+
+		private Entry(Record record, int f) {
+			this.record = record;
+			this.g = record.g;
+			this.f = f;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			if (f != other.f) {
+				return Integer.compare(f, other.f);
+			}
+			return Integer.compare(g, other.g);
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+package board;
+
+import java.util.Arrays;
+
+/* The pieces shared by the searches that work on packed boards (see
+ * PuzzleState.getPacked()) instead of PuzzleState objects, which are Solver
+ * and OffHeapSearch:
+ *
+ *   moves         the positions the blank can move to, and the children of a
+ *                 board.
+ *   open list     a binary min-heap of longs, each of which packs the
+ *                 f-value, the g-value, and the index of a node so that
+ *                 comparing two entries as plain numbers orders them like
+ *                 SearchNode.compareTo() does.
+ *   bestG table   an open-addressing hash table of longs, each of which packs
+ *                 a board, the lowest g-value it has been reached with, and a
+ *                 tag.  A slot whose tag is not the table's current tag is
+ *                 empty, so a zeroed table is empty for any tag but 0, and a
+ *                 table can be emptied without touching it by moving on to a
+ *                 new tag.
+ *
+ * The heap and table work on a LongArray, so the same code runs on arrays on
+ * the Java heap and on native memory.
+ */
+final class PackedBoards {
+
+	/* the highest g-value that fits in an open list entry or table entry */
+	static final int MAX_G = 0xFF;
+
+	/* layout of a table entry: the board, the g-value, then the tag */
+	static final long BOARD_MASK = (1L << 36) - 1;
+	private static final int G_SHIFT = 36;
+	private static final int TAG_SHIFT = 44;
+	static final long MAX_TAG = (1L << (64 - TAG_SHIFT)) - 1;
+
+	/* NEIGHBORS[position] holds the positions the blank can move to from there */
+	private static final int[][] NEIGHBORS = new int[9][];
+
+	/* static initializer to fill in the NEIGHBORS table */
+	static {
+		for (int position = 0; position < 9; position++) {
+			int[] targets = new int[4];
+			int count = 0;
+			if (position > 2) {
+				targets[count++] = position - 3;
+			}
+			if (position < 6) {
+				targets[count++] = position + 3;
+			}
+			if (position % 3 != 0) {
+				targets[count++] = position - 1;
+			}
+			if (position % 3 != 2) {
+				targets[count++] = position + 1;
+			}
+			NEIGHBORS[position] = Arrays.copyOf(targets, count);
+		}
+	}
+
+	private PackedBoards() {
+	}
+
+	/* moves */
+
+	/* Stores every child of the board except parentBoard, and the position of
+	 * the blank in each, and returns how many there are.
+	 */
+	static int children(long board, int blank, long parentBoard, long[] childBoards, int[] childBlanks) {
+		int count = 0;
+		for (int target : NEIGHBORS[blank]) {
+			long tile = (board >>> (4 * target)) & 0xF;
+			long child = (board & ~(0xFL << (4 * target))) | (tile << (4 * blank));
+			if (child != parentBoard) {
+				childBoards[count] = child;
+				childBlanks[count] = target;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/* open list */
+
+	/* Packs an open list entry.  Entries with lower f-values are smaller, and
+	 * among equal f-values, entries with higher g-values are smaller.
+	 */
+	static long entry(int f, int g, int node) {
+		return ((long) f << 40) | ((long) (MAX_G - g) << 32) | node;
+	}
+
+	static int entryF(long entry) {
+		return (int) (entry >>> 40);
+	}
+
+	static int entryNode(long entry) {
+		return (int) entry;
+	}
+
+	/* Adds a value to the heap held in the first size slots of the array, which
+	 * must have room for one more.  The heap then has size + 1 values.
+	 */
+	static void push(LongArray heap, long size, long value) {
+		/* move the new value up until its parent is no larger */
+		long i = size;
+		while (i > 0) {
+			long parent = (i - 1) >>> 1;
+			long parentValue = heap.get(parent);
+			if (parentValue <= value) {
+				break;
+			}
+			heap.set(i, parentValue);
+			i = parent;
+		}
+		heap.set(i, value);
+	}
+
+	/* Removes and returns the smallest value of the heap held in the first size
+	 * slots of the array.  The heap then has size - 1 values.
+	 */
+	static long pop(LongArray heap, long size) {
+		long top = heap.get(0);
+		long last = heap.get(--size);
+
+		/* move the last value down from the top until neither child is smaller */
+		long i = 0;
+		while (true) {
+			long child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			long childValue = heap.get(child);
+			if (child + 1 < size) {
+				long rightValue = heap.get(child + 1);
+				if (rightValue < childValue) {
+					child++;
+					childValue = rightValue;
+				}
+			}
+			if (last <= childValue) {
+				break;
+			}
+			heap.set(i, childValue);
+			i = child;
+		}
+		if (size > 0) {
+			heap.set(i, last);
+		}
+		return top;
+	}
+
+	/* bestG table */
+
+	static long tableEntry(long board, int g, long tag) {
+		return board | ((long) g << G_SHIFT) | (tag << TAG_SHIFT);
+	}
+
+	static int tableG(long entry) {
+		return (int) (entry >>> G_SHIFT) & MAX_G;
+	}
+
+	static boolean isEmpty(long entry, long tag) {
+		return (entry >>> TAG_SHIFT) != tag;
+	}
+
+	/* Returns the slot that holds the board, or if it is not in the table, the
+	 * empty slot it would go in.  The capacity of the table must be a power of 2
+	 * and the table must have at least one empty slot.
+	 */
+	static long probe(LongArray table, long capacity, long board, long tag) {
+		long mask = capacity - 1;
+		for (long slot = home(board, mask); ; slot = (slot + 1) & mask) {
+			long value = table.get(slot);
+			if (isEmpty(value, tag) || (value & BOARD_MASK) == board) {
+				return slot;
+			}
+		}
+	}
+
+	/* the slot a board starts probing from, after mixing its bits */
+	private static long home(long board, long mask) {
+		long h = board * 0x9E3779B97F4A7C15L;
+		return (h ^ (h >>> 29)) & mask;
+	}
+
+}
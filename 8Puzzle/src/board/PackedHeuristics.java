@@ -0,0 +1,83 @@
+package board;
+
+/* Batch versions of the parts of the default heuristic, working directly on
+ * arrays of boards in the packed form returned by PuzzleState.getPacked().
+ *
+ * Evaluating one PuzzleState at a time spends most of its time on loop
+ * overhead and branches.  These methods instead loop over the grid locations
+ * on the outside and over the boards on the inside, and each inner loop body
+ * is a shift, a mask, and a table lookup or comparison with no branches.  This
+ * keeps the boards streaming through the cache and leaves the inner loops in
+ * a form the JIT compiler can unroll.
+ */
+public final class PackedHeuristics {
+
+	/* MANHATTAN[16 * position + tile] is the Manhattan Distance of the tile at
+	 * the given position, with 0 for the blank.  Each row has 16 entries so that
+	 * a 4-bit tile can be used as an index without checking it.
+	 */
+	private static final int[] MANHATTAN = new int[16 * 9];
+
+	/* The 10 pairs of neighboring locations that a direct tile reversal can
+	 * happen on (the last location belongs to the blank, so it is left out).
+	 * A pair is reversed when (board & REVERSAL_MASK[i]) == REVERSAL_PATTERN[i],
+	 * meaning each location holds the tile that belongs in the other one.
+	 */
+	private static final long[] REVERSAL_MASK;
+	private static final long[] REVERSAL_PATTERN;
+
+	/* static initializer to fill in the lookup tables */
+	static {
+		for (int position = 0; position < 9; position++) {
+			for (int tile = 1; tile < 9; tile++) {
+				int goal = tile - 1;
+				MANHATTAN[16 * position + tile] = Math.abs(position / 3 - goal / 3)
+						+ Math.abs(position % 3 - goal % 3);
+			}
+		}
+
+		int[][] pairs = {
+				{0, 1}, {1, 2}, {3, 4}, {4, 5}, {6, 7},
+				{0, 3}, {1, 4}, {2, 5}, {3, 6}, {4, 7}
+		};
+		REVERSAL_MASK = new long[pairs.length];
+		REVERSAL_PATTERN = new long[pairs.length];
+		for (int i = 0; i < pairs.length; i++) {
+			int first = pairs[i][0];
+			int second = pairs[i][1];
+			REVERSAL_MASK[i] = (0xFL << (4 * first)) | (0xFL << (4 * second));
+			REVERSAL_PATTERN[i] = (((long) (second + 1)) << (4 * first)) | (((long) (first + 1)) << (4 * second));
+		}
+	}
+
+	private PackedHeuristics() {
+	}
+
+	/* Adds the sum of the Manhattan Distances of each of the first count boards
+	 * to the corresponding entry of out.
+	 */
+	public static void addManhattanDistances(long[] boards, int count, int[] out) {
+		for (int position = 0; position < 9; position++) {
+			int shift = 4 * position;
+			int base = 16 * position;
+			for (int b = 0; b < count; b++) {
+				out[b] += MANHATTAN[base + (int) ((boards[b] >>> shift) & 0xF)];
+			}
+		}
+	}
+
+	/* Adds the number of direct tile reversals (2 for each reversed pair, as in
+	 * PuzzleState.numTileReversals()) of each of the first count boards to the
+	 * corresponding entry of out.
+	 */
+	public static void addTileReversals(long[] boards, int count, int[] out) {
+		for (int pair = 0; pair < REVERSAL_MASK.length; pair++) {
+			long mask = REVERSAL_MASK[pair];
+			long pattern = REVERSAL_PATTERN[pair];
+			for (int b = 0; b < count; b++) {
+				out[b] += ((boards[b] & mask) == pattern) ? 2 : 0;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package board;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/* An array of longs, indexed by long, kept in fixed-size pages from an
+ * OffHeapArena.  Growing it only adds pages, so nothing is ever copied, and
+ * no single block has to be larger than a page.  New pages are all zeros.
+ * The pages can be copied to another PagedLongArray without going through
+ * the Java heap, and written to or read from a file as big-endian longs
+ * through one page-sized buffer.
+ */
+final class PagedLongArray implements LongArray {
+
+	static final int PAGE_SHIFT = 12; /* 2^12 longs (32 KB) per page */
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final int PAGE_BYTES = 8 * PAGE_SIZE;
+
+	private final OffHeapArena arena;
+	private long[] pages = new long[16]; /* the address of each page */
+	private int numPages = 0;
+
+	/* Creates an array with room for at least the given number of longs. */
+	PagedLongArray(OffHeapArena arena, long capacity) {
+		this.arena = arena;
+		ensureCapacity(capacity);
+	}
+
+	long capacity() {
+		return (long) numPages << PAGE_SHIFT;
+	}
+
+	/* Adds pages until there is room for the given number of longs. */
+	void ensureCapacity(long capacity) {
+		while (capacity() < capacity) {
+			if (numPages == pages.length) {
+				pages = Arrays.copyOf(pages, numPages * 2);
+			}
+			pages[numPages++] = arena.allocate(PAGE_BYTES);
+		}
+	}
+
+	@Override
+	public long get(long index) {
+		return OffHeapArena.getLong(address(index));
+	}
+
+	@Override
+	public void set(long index, long value) {
+		OffHeapArena.putLong(address(index), value);
+	}
+
+	/* Copies the first count longs to the start of another array, adding pages
+	 * to it if needed.
+	 */
+	void copyTo(PagedLongArray target, long count) {
+		target.ensureCapacity(count);
+		for (int page = 0; (long) page << PAGE_SHIFT < count; page++) {
+			OffHeapArena.copy(pages[page], target.pages[page], 8L * pageCount(page, count));
+		}
+	}
+
+	/* Writes the first count longs to the channel, big-endian. */
+	void write(WritableByteChannel out, long count) throws IOException {
+		ByteBuffer transfer = ByteBuffer.allocate(PAGE_BYTES);
+		LongBuffer longs = transfer.asLongBuffer();
+		for (int page = 0; (long) page << PAGE_SHIFT < count; page++) {
+			int n = pageCount(page, count);
+			for (int i = 0; i < n; i++) {
+				longs.put(i, OffHeapArena.getLong(pages[page] + 8L * i));
+			}
+			transfer.clear().limit(8 * n);
+			while (transfer.hasRemaining()) {
+				out.write(transfer);
+			}
+		}
+	}
+
+	/* Reads count longs written by write() into the start of the array, adding
+	 * pages if needed.
+	 */
+	void read(ReadableByteChannel in, long count) throws IOException {
+		ensureCapacity(count);
+		ByteBuffer transfer = ByteBuffer.allocate(PAGE_BYTES);
+		LongBuffer longs = transfer.asLongBuffer();
+		for (int page = 0; (long) page << PAGE_SHIFT < count; page++) {
+			int n = pageCount(page, count);
+			transfer.clear().limit(8 * n);
+			while (transfer.hasRemaining()) {
+				if (in.read(transfer) < 0) {
+					throw new EOFException("the file ended after " + (((long) page << PAGE_SHIFT) + transfer.position() / 8)
+							+ " of " + count + " longs");
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				OffHeapArena.putLong(pages[page] + 8L * i, longs.get(i));
+			}
+		}
+	}
+
+	/* Gives every page back to the arena, which frees it right away.  The array
+	 * must not be used afterwards.
+	 */
+	void free() {
+		for (int i = 0; i < numPages; i++) {
+			arena.free(pages[i]);
+		}
+		numPages = 0;
+	}
+
+	private long address(long index) {
+		return pages[(int) (index >>> PAGE_SHIFT)] + (((int) index & PAGE_MASK) << 3);
+	}
+
+	/* how many of the first count longs are in the given page */
+	private static int pageCount(int page, long count) {
+		return (int) Math.min(PAGE_SIZE, count - ((long) page << PAGE_SHIFT));
+	}
+
+}
@@ -0,0 +1,314 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/* IDA* on every core (see IterativeDeepeningSearch for the algorithm itself).
+ * Each iteration starts as one task on a fork-join pool.  Down to a split
+ * depth, every node hands its children to new tasks, which idle workers steal
+ * from each other; below it, each task searches its subtree depth-first on
+ * its own.  An iteration ends when every task has finished, and only then does
+ * the next one start with the new threshold, so the workers always agree on
+ * the threshold and the search stays exactly as optimal as plain IDA*.  As soon
+ * as any task finds the solved state, the others stop.
+ *
+ * The workers share a transposition table with room for a fixed number of
+ * states.  For each state in it, the table holds the fewest moves it has been
+ * reached with so far in this iteration, which bounds how deep the search
+ * below it can go.  A worker that reaches a state with more moves than that
+ * leaves it alone, since everything it could find there is found by the
+ * search already under way with more moves to spare.  Reaching a state with
+ * the same number of moves is only skipped if the MovePruner is in the same
+ * state too, because the two searches below it are then the same; otherwise
+ * the pruner could have ruled out the part of the tree that the other search
+ * relied on.  Entries are single longs updated with compare-and-set, so no
+ * worker ever waits for a lock, and a state that does not fit in the table is
+ * just searched without it, which keeps the memory used fixed.
+ */
+public class ParallelIterativeDeepeningSearch {
+
+	/* The depth down to which every node is split into tasks when none is given. */
+	public static final int DEFAULT_SPLIT_DEPTH = 6;
+
+	/* The size of the transposition table when none is given, as a power of 2. */
+	public static final int DEFAULT_TABLE_BITS = 16;
+
+	private static final int FOUND = -1; /* or stopped, if there is no solution */
+	private static final int NONE = Integer.MAX_VALUE;
+
+	/* how many slots a state may be placed in, starting at its hash */
+	private static final int MAX_PROBES = 4;
+
+	/* A table entry holds the board in its low 36 bits, then the number of moves,
+	 * the pruner state, and the threshold of the iteration that wrote it plus 1
+	 * (so an empty slot, 0, never looks current).
+	 */
+	private static final long BOARD_MASK = (1L << 36) - 1;
+	private static final int G_SHIFT = 36;
+	private static final int G_BITS = 6;
+	private static final int PRUNE_SHIFT = G_SHIFT + G_BITS;
+	private static final int PRUNE_BITS = 15;
+	private static final int TAG_SHIFT = PRUNE_SHIFT + PRUNE_BITS;
+	private static final int MAX_TAG = (1 << (64 - TAG_SHIFT)) - 1;
+
+	private final Heuristic heuristic;
+	private final MovePruner pruner;
+	private final ForkJoinPool pool;
+	private final int splitDepth;
+	private final int tableBits;
+
+	/* Creates a search that runs on the common fork-join pool. */
+	public ParallelIterativeDeepeningSearch(Heuristic heuristic) {
+		this(heuristic, ForkJoinPool.commonPool());
+	}
+
+	public ParallelIterativeDeepeningSearch(Heuristic heuristic, ForkJoinPool pool) {
+		this(heuristic, MovePruner.standard(), pool, DEFAULT_SPLIT_DEPTH, DEFAULT_TABLE_BITS);
+	}
+
+	public ParallelIterativeDeepeningSearch(Heuristic heuristic, MovePruner pruner, ForkJoinPool pool,
+			int splitDepth, int tableBits) {
+		if (splitDepth < 0) {
+			throw new IllegalArgumentException("the split depth cannot be negative");
+		}
+		if (tableBits < 1 || tableBits > 30) {
+			throw new IllegalArgumentException("the table size must be from 2^1 to 2^30 entries");
+		}
+		this.heuristic = heuristic;
+		this.pruner = pruner;
+		this.pool = pool;
+		this.splitDepth = splitDepth;
+		this.tableBits = tableBits;
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved.  If the calling thread is interrupted, the workers are
+	 * stopped and a CancellationException is thrown with the interrupt status
+	 * left set.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+		return new Search().run(initialState, stats);
+	}
+
+	/* The state shared by the workers during one call to solve(). */
+	private final class Search {
+
+		final AtomicLongArray table = new AtomicLongArray(1 << tableBits);
+		final LongAdder expanded = new LongAdder();
+		final LongAdder generated = new LongAdder();
+		final AtomicReference<List<PuzzleState>> solution = new AtomicReference<>();
+
+		/* set once a solution is found or the caller is interrupted */
+		volatile boolean stopped;
+
+		List<PuzzleState> run(PuzzleState initialState, SearchStatistics stats) {
+			List<PuzzleState> path = new ArrayList<>();
+			path.add(initialState);
+			int h = heuristic.h(initialState);
+			int threshold = h;
+			try {
+				while (true) {
+					int next = await(pool.submit(new NodeTask(initialState, h, pruner.start(), 0, threshold, path)));
+					if (next == FOUND) {
+						if (solution.get() == null) {
+							throw new CancellationException("the search was interrupted");
+						}
+						return solution.get();
+					}
+					threshold = next;
+				}
+			} finally {
+				stats.add(expanded.sum(), generated.sum());
+			}
+		}
+
+		/* Waits for an iteration to finish.  If the caller is interrupted, the
+		 * workers are told to stop, and the iteration is still waited for so that
+		 * nothing is left running after solve() returns.
+		 */
+		private int await(ForkJoinTask<Integer> iteration) {
+			try {
+				return iteration.get();
+			} catch (InterruptedException e) {
+				stopped = true;
+				iteration.quietlyJoin();
+				Thread.currentThread().interrupt();
+				return FOUND;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+
+		/* Searches below the given state like IterativeDeepeningSearch.search(),
+		 * splitting the children into tasks while g is less than the split depth.
+		 */
+		int search(PuzzleState state, int h, int pruneState, int g, int threshold, List<PuzzleState> path) {
+
+			if (g + h > threshold) {
+				return g + h;
+			}
+			if (state.equals(PuzzleState.GOAL_STATE)) {
+				solution.compareAndSet(null, new ArrayList<>(path));
+				stopped = true;
+				return FOUND;
+			}
+			/* unwind the same way whether another task found the solution or the
+			 * caller was interrupted, so that every task ends normally and the
+			 * iteration only finishes once all of them have */
+			if (stopped) {
+				return FOUND;
+			}
+			if (!claim(state.getPacked(), g, pruneState, threshold)) {
+				return NONE;
+			}
+
+			/* generate the children whose moves do not finish a redundant sequence */
+			ArrayList<Integer> operations = state.getPossibleOperations();
+			int[] childPruneStates = new int[operations.size()];
+			PuzzleState[] children = new PuzzleState[operations.size()];
+			long[] boards = new long[operations.size()];
+			int count = 0;
+			for (int op : operations) {
+				int next = pruner.next(pruneState, op);
+				if (next != MovePruner.PRUNED) {
+					childPruneStates[count] = next;
+					children[count] = state.getNewState(op);
+					boards[count] = children[count].getPacked();
+					count++;
+				}
+			}
+			int[] childH = new int[count];
+			heuristic.evaluateAll(boards, count, childH);
+			expanded.increment();
+			generated.add(count);
+
+			/* BPMX, as in IterativeDeepeningSearch */
+			for (int i = 0; i < count; i++) {
+				h = Math.max(h, childH[i] - 1);
+			}
+			if (g + h > threshold) {
+				return g + h;
+			}
+
+			int lowest = NONE;
+			if (g < splitDepth) {
+				List<NodeTask> tasks = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					List<PuzzleState> childPath = new ArrayList<>(path);
+					childPath.add(children[i]);
+					tasks.add(new NodeTask(children[i], Math.max(childH[i], h - 1), childPruneStates[i], g + 1,
+							threshold, childPath));
+				}
+				ForkJoinTask.invokeAll(tasks);
+				for (NodeTask task : tasks) {
+					int result = task.join();
+					if (result == FOUND) {
+						return FOUND;
+					}
+					lowest = Math.min(lowest, result);
+				}
+				return lowest;
+			}
+			for (int i = 0; i < count; i++) {
+				path.add(children[i]);
+				int result = search(children[i], Math.max(childH[i], h - 1), childPruneStates[i], g + 1, threshold,
+						path);
+				if (result == FOUND) {
+					return FOUND;
+				}
+				path.remove(path.size() - 1);
+				lowest = Math.min(lowest, result);
+			}
+			return lowest;
+		}
+
+		/* Records in the table that the board is being searched with g moves in
+		 * the iteration with the given threshold.  Returns false if a search of the
+		 * board with fewer moves, or with as many moves and the same pruner state,
+		 * is already recorded, in which case the board should be skipped.
+		 */
+		private boolean claim(long board, int g, int pruneState, int threshold) {
+			long tag = threshold + 1;
+			if (g >= (1 << G_BITS) || pruneState >= (1 << PRUNE_BITS) || tag > MAX_TAG) {
+				return true;
+			}
+			long entry = board | ((long) g << G_SHIFT) | ((long) pruneState << PRUNE_SHIFT) | (tag << TAG_SHIFT);
+			int mask = table.length() - 1;
+			int index = (int) ((board * 0x9E3779B97F4A7C15L) >>> (64 - tableBits)) & mask;
+			int probe = 0;
+			while (probe < MAX_PROBES) {
+				long current = table.get(index);
+				if ((current >>> TAG_SHIFT) != tag) {
+					/* empty, or left over from an earlier iteration */
+					if (table.compareAndSet(index, current, entry)) {
+						return true;
+					}
+					continue; /* another worker got there first, so look again */
+				}
+				if ((current & BOARD_MASK) == board) {
+					int otherG = (int) (current >>> G_SHIFT) & ((1 << G_BITS) - 1);
+					int otherPruneState = (int) (current >>> PRUNE_SHIFT) & ((1 << PRUNE_BITS) - 1);
+					if (otherG < g || (otherG == g && otherPruneState == pruneState)) {
+						return false;
+					}
+					if (otherG > g) {
+						if (table.compareAndSet(index, current, entry)) {
+							return true;
+						}
+						continue;
+					}
+				}
+				probe++;
+				index = (index + 1) & mask;
+			}
+			return true;
+		}
+
+		/* One node of the tree, searched as a task of its own. */
+		private final class NodeTask extends RecursiveTask<Integer> {
+
+			private static final long serialVersionUID = 1L;
+
+			private final PuzzleState state;
+			private final int h;
+			private final int pruneState;
+			private final int g;
+			private final int threshold;
+			private final List<PuzzleState> path;
+
+			NodeTask(PuzzleState state, int h, int pruneState, int g, int threshold, List<PuzzleState> path) {
+				this.state = state;
+				this.h = h;
+				this.pruneState = pruneState;
+				this.g = g;
+				this.threshold = threshold;
+				this.path = path;
+			}
+
+			@Override
+			protected Integer compute() {
+				return search(state, h, pruneState, g, threshold, new ArrayList<>(path));
+			}
+		}
+	}
+
+}
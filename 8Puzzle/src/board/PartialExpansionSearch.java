@@ -0,0 +1,123 @@
+package board;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/* Partial Expansion A* (PEA*).  Plain A* puts every child of an expanded node
+ * on the open list, but most of those children have f-values above the length
+ * of the solution and are never taken off again, so they only make the open
+ * list bigger and every push and pop slower.
+ *
+ * PEA* stores each node on the open list with a stored value F, which starts
+ * out as the node's own f-value.  When the node is taken off the open list,
+ * all of its children are generated, but only the ones whose f-value is at
+ * most F (and above the F of its last expansion) are put on the open list.
+ * The node itself goes back on the open list with F raised to the lowest
+ * f-value among its other children, or is dropped if there are none left.
+ * The node stands in for its children that were held back, and since F is
+ * exactly the f-value of the best of them, nodes still come off the open list
+ * in the same order as in A*, and the solution is still optimal.
+ *
+ * Every move costs 1, so with a consistent heuristic (every one in this
+ * package except DualHeuristic) a child's f-value is always either the
+ * parent's f-value or 2 more than it.  A node is then expanded at most twice,
+ * and only the children with the lowest f-value are ever put on the open list
+ * before they are needed.  The cost is that a node's children are generated
+ * again if it is expanded a second time.
+ */
+public class PartialExpansionSearch {
+
+	private static final int NONE = Integer.MAX_VALUE;
+
+	private final Heuristic heuristic;
+
+	public PartialExpansionSearch(Heuristic heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	/* A node on the open list, along with its stored value and the stored
+	 * value it had when it was last expanded (-1 if it has not been expanded).
+	 */
+	private static class Entry implements Comparable<Entry> {
+		final SearchNode node;
+		final int storedF;
+		final int expandedF;
+
+		Entry(SearchNode node, int storedF, int expandedF) {
+			this.node = node;
+			this.storedF = storedF;
+			this.expandedF = expandedF;
+		}
+
+		/* ordered like SearchNode.compareTo(), but by the stored value */
+		@Override
+		public int compareTo(Entry other) {
+			if (storedF != other.storedF) {
+				return Integer.compare(storedF, other.storedF);
+			}
+			return Integer.compare(other.node.g(), node.g());
+		}
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+
+		SearchNode root = new SearchNode(initialState, heuristic.h(initialState));
+		PriorityQueue<Entry> openList = new PriorityQueue<>();
+		openList.add(new Entry(root, root.f(), -1));
+
+		/* the lowest g-value each discovered state has been reached with so far */
+		Map<PuzzleState, Integer> bestG = new HashMap<>();
+		bestG.put(initialState, 0);
+
+		while (true) {
+
+			Entry current = openList.remove();
+			SearchNode node = current.node;
+			/* skip nodes for states that were reached again with a lower g-value */
+			if (node.g() > bestG.get(node.getState())) {
+				continue;
+			}
+			if (node.getState().equals(PuzzleState.GOAL_STATE)) {
+				return node.path();
+			}
+			PuzzleSolver.checkCancelled();
+
+			/* add the children that are due now, and find the f-value of the next
+			 * ones */
+			List<SearchNode> children = node.children(heuristic);
+			stats.nodeExpanded();
+			stats.nodesGenerated(children.size());
+			int nextF = NONE;
+			for (SearchNode child : children) {
+				if (child.f() > current.storedF) {
+					nextF = Math.min(nextF, child.f());
+					continue;
+				}
+				if (child.f() <= current.expandedF) {
+					continue; /* added the last time this node was expanded */
+				}
+				Integer previousG = bestG.get(child.getState());
+				if (previousG != null && previousG <= child.g()) {
+					continue;
+				}
+				bestG.put(child.getState(), child.g());
+				openList.add(new Entry(child, child.f(), -1));
+			}
+
+			/* put the node back to stand in for the children that were held back */
+			if (nextF != NONE) {
+				openList.add(new Entry(node, nextF, current.storedF));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+package board;
+
+import java.util.Arrays;
+
+/* A pattern database heuristic.  A pattern is a few of the tiles, and the
+ * database for a pattern holds, for every way of placing those tiles and the
+ * blank on the board, the number of moves needed to get them to their goal
+ * positions with the other tiles treated as interchangeable.  That is never
+ * more than the moves needed to solve the whole puzzle, so the largest value
+ * over several patterns is admissible.  Unlike the Manhattan Distance, it
+ * accounts for every way the pattern's tiles get in each other's way.
+ *
+ * Each database is filled in with a breadth-first search from the solved
+ * placement.  A placement is encoded as a number in base 9 whose digits are
+ * the positions of the pattern's tiles followed by the position of the blank,
+ * so a pattern of k tiles needs a table of 9^(k + 1) bytes.
+ *
+ * Because each pattern only looks at some of the tiles, the value for a board
+ * and for its dual (see DualHeuristic) usually differ, which makes this
+ * heuristic a good one to combine with dual lookups.
+ */
+public class PatternDatabaseHeuristic implements Heuristic {
+
+	/* the most tiles a pattern can have, which keeps each table at most 9^6 bytes */
+	public static final int MAX_PATTERN_TILES = 5;
+
+	private final int[][] patterns;
+	private final byte[][] tables;
+
+	/* weights[p][tile] is what the tile adds to the key of pattern p for each
+	 * step its position is past 0, or 0 if the tile is not in the pattern.
+	 */
+	private final int[][] weights;
+
+	/* Creates the default heuristic, which uses tiles 1 to 4 and tiles 5 to 8 as
+	 * its two patterns.
+	 */
+	public PatternDatabaseHeuristic() {
+		this(new int[] { 1, 2, 3, 4 }, new int[] { 5, 6, 7, 8 });
+	}
+
+	/* Creates a heuristic that returns the largest value of the databases for
+	 * the given patterns.
+	 */
+	public PatternDatabaseHeuristic(int[]... patterns) {
+		if (patterns.length == 0) {
+			throw new IllegalArgumentException("at least one pattern is needed");
+		}
+		this.patterns = new int[patterns.length][];
+		this.tables = new byte[patterns.length][];
+		this.weights = new int[patterns.length][16];
+		for (int p = 0; p < patterns.length; p++) {
+			int[] pattern = patterns[p].clone();
+			if (pattern.length == 0 || pattern.length > MAX_PATTERN_TILES) {
+				throw new IllegalArgumentException("a pattern must have 1 to " + MAX_PATTERN_TILES + " tiles");
+			}
+			int weight = 1;
+			for (int tile : pattern) {
+				if (tile < 1 || tile > 8 || weights[p][tile] != 0) {
+					throw new IllegalArgumentException("bad pattern " + Arrays.toString(pattern));
+				}
+				weights[p][tile] = weight;
+				weight *= 9;
+			}
+			weights[p][0] = weight; /* the blank is the last digit */
+			this.patterns[p] = pattern;
+			this.tables[p] = fill(pattern.length, weights[p]);
+		}
+	}
+
+	@Override
+	public int h(PuzzleState state) {
+		return h(state.getPacked());
+	}
+
+	@Override
+	public void evaluateAll(long[] boards, int count, int[] out) {
+		for (int b = 0; b < count; b++) {
+			out[b] = h(boards[b]);
+		}
+	}
+
+	private int h(long board) {
+		int best = 0;
+		for (int p = 0; p < tables.length; p++) {
+			int[] weight = weights[p];
+			int key = 0;
+			for (int position = 0; position < 9; position++) {
+				key += position * weight[(int) (board >>> (4 * position)) & 0xF];
+			}
+			best = Math.max(best, tables[p][key]);
+		}
+		return best;
+	}
+
+	/* Returns the table for a pattern of the given number of tiles, filled in
+	 * with a breadth-first search that moves the blank from the solved
+	 * placement.
+	 */
+	private static byte[] fill(int numTiles, int[] weight) {
+		int size = weight[0] * 9;
+		byte[] table = new byte[size];
+		Arrays.fill(table, (byte) -1);
+
+		int goal = 0;
+		for (int position = 0; position < 9; position++) {
+			goal += position * weight[PuzzleState.GOAL_STATE.getTile(position)];
+		}
+
+		int[] queue = new int[size];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = goal;
+		table[goal] = 0;
+		int[] positions = new int[numTiles + 1];
+
+		while (head < tail) {
+			int key = queue[head++];
+			for (int digit = 0, rest = key; digit <= numTiles; digit++, rest /= 9) {
+				positions[digit] = rest % 9;
+			}
+			int blank = positions[numTiles];
+
+			for (int direction = 0; direction < 4; direction++) {
+				int target = neighbor(blank, direction);
+				if (target == -1) {
+					continue;
+				}
+				/* the blank moves to the target, and a pattern tile there moves back */
+				int next = key + (target - blank) * weight[0];
+				for (int digit = 0, digitWeight = 1; digit < numTiles; digit++, digitWeight *= 9) {
+					if (positions[digit] == target) {
+						next += (blank - target) * digitWeight;
+					}
+				}
+				if (table[next] == -1) {
+					table[next] = (byte) (table[key] + 1);
+					queue[tail++] = next;
+				}
+			}
+		}
+		return table;
+	}
+
+	/* Returns the position next to the given one in the given direction (up,
+	 * down, left, right), or -1 if it would be off the board.
+	 */
+	private static int neighbor(int position, int direction) {
+		switch (direction) {
+		case 0:
+			return (position > 2) ? position - 3 : -1;
+		case 1:
+			return (position < 6) ? position + 3 : -1;
+		case 2:
+			return (position % 3 != 0) ? position - 1 : -1;
+		default:
+			return (position % 3 != 2) ? position + 1 : -1;
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("pattern-database");
+		for (int[] pattern : patterns) {
+			sb.append('-');
+			for (int tile : pattern) {
+				sb.append(tile);
+			}
+		}
+		return sb.toString();
+	}
+
+}
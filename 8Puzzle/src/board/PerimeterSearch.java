@@ -0,0 +1,181 @@
+package board;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Perimeter search: A* toward a "perimeter" of states around the solved
+ * state instead of toward the solved state itself.  The perimeter is every
+ * state within a fixed number of moves (the depth) of the solved state, along
+ * with its exact number of moves left, found once with a breadth-first search
+ * backward from the solved state and kept for every later search with the same
+ * depth.
+ *
+ * The perimeter helps in two ways:
+ *
+ *   1. The heuristic is sharpened.  A state on the perimeter gets its exact
+ *      number of moves left, and any other state needs at least depth + 1
+ *      moves, which is often more than the heuristic alone says for states
+ *      close to the solved state.  The combined heuristic is still consistent.
+ *   2. The search stops as soon as it takes a perimeter state off the open
+ *      list.  Its f-value is then the exact length of the solution through
+ *      it, and no other state on the open list can do better, so the rest of
+ *      the solution is read off the perimeter instead of being searched for.
+ *
+ * The last few layers are where A* has the most states in play, so this cuts
+ * the end of every search short at the fixed cost of storing the perimeter.
+ */
+public class PerimeterSearch {
+
+	/* The depth used when none is given. */
+	public static final int DEFAULT_DEPTH = 16;
+
+	/* perimeters that have been built, keyed by depth */
+	private static final Map<Integer, Map<Long, Integer>> PERIMETERS = new ConcurrentHashMap<>();
+
+	private final Heuristic heuristic;
+	private final int depth;
+	private final Map<Long, Integer> perimeter;
+
+	/* Creates a search with a perimeter of the given depth, building the
+	 * perimeter if no search has used that depth yet.
+	 */
+	public PerimeterSearch(Heuristic heuristic, int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("the depth cannot be negative");
+		}
+		this.heuristic = new PerimeterHeuristic(heuristic);
+		this.depth = depth;
+		this.perimeter = PERIMETERS.computeIfAbsent(depth, PerimeterSearch::buildPerimeter);
+	}
+
+	/* Returns the number of states in the perimeter. */
+	public int getPerimeterSize() {
+		return perimeter.size();
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve().  An IllegalArgumentException is thrown if the puzzle
+	 * cannot be solved.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+
+		SearchNode root = new SearchNode(initialState, heuristic.h(initialState));
+		PriorityQueue<SearchNode> openList = new PriorityQueue<>();
+		openList.add(root);
+
+		/* the lowest g-value each discovered state has been reached with so far */
+		Map<PuzzleState, Integer> bestG = new HashMap<>();
+		bestG.put(initialState, 0);
+
+		while (true) {
+
+			SearchNode currentNode = openList.remove();
+			/* skip nodes for states that were reached again with a lower g-value */
+			if (currentNode.g() > bestG.get(currentNode.getState())) {
+				continue;
+			}
+			/* stop at the perimeter and finish the path from there */
+			if (perimeter.containsKey(currentNode.getState().getPacked())) {
+				List<PuzzleState> path = currentNode.path();
+				appendPathToGoal(path);
+				return path;
+			}
+			PuzzleSolver.checkCancelled();
+
+			List<SearchNode> children = currentNode.children(heuristic);
+			stats.nodeExpanded();
+			stats.nodesGenerated(children.size());
+			for (SearchNode child : children) {
+				Integer previousG = bestG.get(child.getState());
+				if (previousG != null && previousG <= child.g()) {
+					continue;
+				}
+				bestG.put(child.getState(), child.g());
+				openList.add(child);
+			}
+		}
+	}
+
+	/* Extends a path that ends on the perimeter to the solved state, by always
+	 * stepping to a neighbor that is one move closer.
+	 */
+	private void appendPathToGoal(List<PuzzleState> path) {
+		PuzzleState state = path.get(path.size() - 1);
+		int distance = perimeter.get(state.getPacked());
+		while (distance > 0) {
+			for (PuzzleState neighbor : state.neighbors()) {
+				Integer neighborDistance = perimeter.get(neighbor.getPacked());
+				if (neighborDistance != null && neighborDistance == distance - 1) {
+					state = neighbor;
+					break;
+				}
+			}
+			path.add(state);
+			distance--;
+		}
+	}
+
+	/* Returns the number of moves left for every state within the given number
+	 * of moves of the solved state, keyed by packed board.
+	 */
+	private static Map<Long, Integer> buildPerimeter(int depth) {
+		Map<Long, Integer> distances = new HashMap<>();
+		ArrayDeque<PuzzleState> queue = new ArrayDeque<>();
+		distances.put(PuzzleState.GOAL_STATE.getPacked(), 0);
+		queue.add(PuzzleState.GOAL_STATE);
+		while (!queue.isEmpty()) {
+			PuzzleState state = queue.remove();
+			int distance = distances.get(state.getPacked());
+			if (distance == depth) {
+				continue;
+			}
+			for (PuzzleState neighbor : state.neighbors()) {
+				if (!distances.containsKey(neighbor.getPacked())) {
+					distances.put(neighbor.getPacked(), distance + 1);
+					queue.add(neighbor);
+				}
+			}
+		}
+		return distances;
+	}
+
+	/* The exact distance for perimeter states, and the larger of the base
+	 * heuristic and depth + 1 for every other state.
+	 */
+	private class PerimeterHeuristic implements Heuristic {
+
+		private final Heuristic base;
+
+		PerimeterHeuristic(Heuristic base) {
+			this.base = base;
+		}
+
+		@Override
+		public int h(PuzzleState state) {
+			Integer distance = perimeter.get(state.getPacked());
+			return (distance != null) ? distance : Math.max(base.h(state), depth + 1);
+		}
+
+		@Override
+		public void evaluateAll(long[] boards, int count, int[] out) {
+			base.evaluateAll(boards, count, out);
+			for (int b = 0; b < count; b++) {
+				Integer distance = perimeter.get(boards[b]);
+				out[b] = (distance != null) ? distance : Math.max(out[b], depth + 1);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "perimeter-" + depth + "-" + base;
+		}
+	}
+
+}
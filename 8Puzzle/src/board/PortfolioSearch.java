@@ -0,0 +1,182 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/* Runs several solvers ("engines") on the same board at the same time and
+ * returns the solution of whichever finishes first.  Which engine is fastest
+ * depends a lot on the board, so racing them makes the slowest boards only as
+ * slow as the best engine for each one.  Every engine is optimal, so the first
+ * solution is an optimal one.
+ *
+ * As soon as one engine finishes, the others are interrupted, which makes them
+ * throw a CancellationException (see PuzzleSolver.checkCancelled()).  solve()
+ * does not return until every engine it started has actually stopped, so no
+ * search is ever left running in the background after the call.
+ */
+public class PortfolioSearch {
+
+	/* One configuration of a solver that can be raced against the others. */
+	public interface Engine {
+		List<PuzzleState> solve(PuzzleState state, SearchStatistics stats);
+	}
+
+	/* the threads the engines run on, shared by every portfolio */
+	private static final ExecutorService ENGINE_THREADS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "portfolio-engine");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Map<String, Engine> engines;
+
+	/* Creates a portfolio of the given engines, keyed by name. */
+	public PortfolioSearch(Map<String, Engine> engines) {
+		if (engines.isEmpty()) {
+			throw new IllegalArgumentException("a portfolio needs at least one engine");
+		}
+		this.engines = new LinkedHashMap<>(engines);
+	}
+
+	/* Returns the default portfolio: A* with each heuristic, A* that breaks ties
+	 * toward shallower nodes, and IDA* with each heuristic.
+	 */
+	public static PortfolioSearch standard() {
+		Heuristic walkingDistance = new WalkingDistanceHeuristic();
+		Map<String, Engine> engines = new LinkedHashMap<>();
+		engines.put("astar/" + Heuristic.DEFAULT,
+				(state, stats) -> PuzzleSolver.aStar(state, Heuristic.DEFAULT, stats, SearchNode::compareTo));
+		engines.put("astar/" + walkingDistance,
+				(state, stats) -> PuzzleSolver.aStar(state, walkingDistance, stats, SearchNode::compareTo));
+		engines.put("astar-shallow-first/" + walkingDistance,
+				(state, stats) -> PuzzleSolver.aStar(state, walkingDistance, stats, (a, b) -> (a.f() != b.f())
+						? Integer.compare(a.f(), b.f()) : Integer.compare(a.g(), b.g())));
+		engines.put("idastar/" + Heuristic.DEFAULT,
+				(state, stats) -> new IterativeDeepeningSearch(Heuristic.DEFAULT).solve(state, stats));
+		engines.put("idastar/" + walkingDistance,
+				(state, stats) -> new IterativeDeepeningSearch(walkingDistance).solve(state, stats));
+		return new PortfolioSearch(engines);
+	}
+
+	/* The result of one engine, or the exception or error it threw. */
+	private static class Outcome {
+		final List<PuzzleState> solution;
+		final Throwable error;
+
+		Outcome(List<PuzzleState> solution, Throwable error) {
+			this.solution = solution;
+			this.error = error;
+		}
+	}
+
+	/* Races every engine on the given state and returns the first solution.  The
+	 * work of every engine, including the ones that lost, is added to stats.  An
+	 * IllegalArgumentException is thrown right away if the puzzle cannot be
+	 * solved, and if every engine fails, the exception or error (such as an
+	 * OutOfMemoryError) of the first one to fail is thrown.  If the calling
+	 * thread is interrupted, every engine is stopped and a CancellationException
+	 * is thrown with the interrupt status left set.
+	 */
+	public List<PuzzleState> solve(PuzzleState state, SearchStatistics stats) {
+		if (!state.isSolvable()) {
+			throw new IllegalArgumentException(state + "\ncannot be solved");
+		}
+
+		List<String> names = new ArrayList<>(engines.keySet());
+		int n = names.size();
+		BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+		CountDownLatch finished = new CountDownLatch(n);
+		Thread[] runners = new Thread[n];
+		boolean[] stopped = { false };
+		SearchStatistics[] engineStats = new SearchStatistics[n];
+
+		for (int i = 0; i < n; i++) {
+			final int index = i;
+			final Engine engine = engines.get(names.get(i));
+			engineStats[i] = new SearchStatistics();
+			ENGINE_THREADS.execute(() -> {
+				synchronized (runners) {
+					runners[index] = Thread.currentThread();
+				}
+				try {
+					synchronized (runners) {
+						if (stopped[0]) {
+							throw new CancellationException("the portfolio already has a solution");
+						}
+					}
+					outcomes.add(new Outcome(engine.solve(state, engineStats[index]), null));
+				} catch (Throwable e) {
+					/* errors are reported too, since solve() waits for an outcome from
+					 * every engine that has not been beaten */
+					outcomes.add(new Outcome(null, e));
+				} finally {
+					/* clear the slot and the interrupt together, so that a late interrupt
+					 * can never reach whatever this pool thread runs next */
+					synchronized (runners) {
+						runners[index] = null;
+						Thread.interrupted();
+					}
+					finished.countDown();
+				}
+			});
+		}
+
+		Outcome winner = null;
+		Throwable firstError = null;
+		boolean interrupted = false;
+		try {
+			for (int received = 0; received < n && winner == null; received++) {
+				Outcome outcome = outcomes.take();
+				if (outcome.solution != null) {
+					winner = outcome;
+				} else if (firstError == null) {
+					firstError = outcome.error;
+				}
+			}
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+
+		/* stop the engines that are still running and wait for all of them to end */
+		synchronized (runners) {
+			stopped[0] = true;
+			for (Thread runner : runners) {
+				if (runner != null) {
+					runner.interrupt();
+				}
+			}
+		}
+		while (true) {
+			try {
+				finished.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		for (SearchStatistics engineStat : engineStats) {
+			stats.add(engineStat);
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("the portfolio search was interrupted");
+		}
+		if (winner == null) {
+			if (firstError instanceof Error) {
+				throw (Error) firstError;
+			}
+			throw (RuntimeException) firstError;
+		}
+		return winner.solution;
+	}
+
+}
@@ -1,8 +1,13 @@
 package board;
 
-import java.util.LinkedList;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
 
 /* This class contains a single static method called solve() that will find an optimal
  * solution to a given 8-Puzzle object.
@@ -18,46 +23,341 @@ public class PuzzleSolver {
 	 * The A* algorithm works as follows: The PuzzleState is examined to 
 	 * find its neighbors, excluding its "parent."  Then, each of those neighbors,
 	 * now that they have been "discovered", are added to a queue called the "open
-	 * list," which is ordered based on how promising each state looks.  This is 
+	 * list," unless they were already discovered with fewer moves.  The open list
+	 * is ordered based on how promising each state looks.  This is 
 	 * determined by the f-values of the states.  A lower f-value indicates a more 
 	 * promising state, which means it is more likely to lead to an optimal solution.
 	 * On each pass through a loop, the most promising puzzle state in the open list
 	 * is examined, and this repeats until the solved state is found.
 	 */
 	public static List<PuzzleState> solve(PuzzleState initialState) {
+		return solve(initialState, Heuristic.DEFAULT, new SearchStatistics());
+	}
+	
+	/* Same as solve(PuzzleState), but uses the given heuristic to order the open
+	 * list instead of the default one.
+	 */
+	public static List<PuzzleState> solve(PuzzleState initialState, Heuristic heuristic) {
+		return solve(initialState, heuristic, new SearchStatistics());
+	}
+	
+	/* Same as solve(PuzzleState, Heuristic), but also records how many nodes were
+	 * expanded and generated in the given SearchStatistics object.  This is used to
+	 * compare heuristics with each other on the same set of scrambles.
+	 */
+	public static List<PuzzleState> solve(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return recorded("astar", stats, () -> aStar(initialState, heuristic, stats, SearchNode::compareTo));
+	}
+	
+	/* The A* search behind solve(), with the open list ordered by the given
+	 * comparator instead of SearchNode.compareTo().  The comparator must order
+	 * nodes by f-value first, but it may break ties in any way.
+	 */
+	static List<PuzzleState> aStar(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats, Comparator<SearchNode> order) {
 		
-		PuzzleState scrambledOne = new PuzzleState(initialState.getBoardState());
-		PriorityQueue<PuzzleState> openList = new PriorityQueue<>();
+		SearchNode scrambledOne = new SearchNode(initialState, heuristic.h(initialState));
+		PriorityQueue<SearchNode> openList = new PriorityQueue<>(order);
 		openList.add(scrambledOne);
-		PuzzleState currentState = scrambledOne;
+		
+		/* the lowest g-value each discovered state has been reached with so far */
+		Map<PuzzleState, Integer> bestG = new HashMap<>();
+		bestG.put(initialState, 0);
+		SearchNode currentNode;
 		
 		while (true) {
 			
-			currentState = openList.remove();
+			currentNode = openList.remove();
+			/* skip nodes for states that were reached again with a lower g-value */
+			if (currentNode.g() > bestG.get(currentNode.getState())) {
+				continue;
+			}
 			/* It the solved state has been found, exit the loop */
-			if (currentState.equals(PuzzleState.GOAL_STATE)) {
+			if (currentNode.getState().equals(PuzzleState.GOAL_STATE)) {
 				break;
 			}
+			checkCancelled();
+			
+			/* otherwise, add the children that have not been reached more cheaply before
+			 * to the open list */
+			List<SearchNode> children = currentNode.children(heuristic);
+			stats.nodeExpanded();
+			stats.nodesGenerated(children.size());
 			
-			/* otherwise, add all of this state's children to the open list */
-			List<PuzzleState> children = currentState.children();
-			for (PuzzleState child : children) {
-				if ((openList.contains(child))) {
+			/* Bidirectional pathmax: a move changes the true distance by exactly 1, so
+			 * each child's h-value less one bounds this node's, and this node's less one
+			 * bounds each child's.  Raising the children's values this way does nothing
+			 * with a consistent heuristic, but keeps an inconsistent one (such as a
+			 * DualHeuristic) from putting a child on the open list with a value lower
+			 * than its neighbors already show it must have.  Nodes are put back on the
+			 * open list whenever they are reached with a lower g-value, even if they were
+			 * already expanded, so the solution stays optimal either way. */
+			int h = currentNode.h();
+			for (SearchNode child : children) {
+				h = Math.max(h, child.h() - 1);
+			}
+			for (int i = 0; i < children.size(); i++) {
+				SearchNode child = children.get(i);
+				if (child.h() < h - 1) {
+					children.set(i, new SearchNode(child.getState(), currentNode, child.getParentOperation(), h - 1));
+				}
+			}
+			
+			for (SearchNode child : children) {
+				Integer previousG = bestG.get(child.getState());
+				if (previousG != null && previousG <= child.g()) {
 					continue;
 				}
+				bestG.put(child.getState(), child.g());
 				openList.add(child);
 			}
 			
 		}
 		
-		LinkedList<PuzzleState> operationsToSolve = new LinkedList<>();
-		PuzzleState curr = currentState;
-		while (curr != null) {
-			operationsToSolve.addFirst(curr);
-			curr = curr.getParent();
-		}
-		
-		return operationsToSolve;
+		return currentNode.path();
 		
 	}
+	
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic, SearchStatistics),
+	 * but with the calling thread's Solver, which keeps its arrays from one call
+	 * to the next instead of allocating new ones.  It is recorded as the same
+	 * mode, since it is the same search.  See Solver for details.
+	 */
+	public static List<PuzzleState> solveReusing(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return recorded("astar", stats, () -> Solver.forCurrentThread().solve(initialState, heuristic, stats));
+	}
+	
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic), but never keeps more
+	 * than maxNodes nodes in memory at once.  See MemoryBoundedSearch for details.  An
+	 * IllegalStateException is thrown if the budget is too small to hold an optimal
+	 * solution.
+	 */
+	public static List<PuzzleState> solveMemoryBounded(PuzzleState initialState, Heuristic heuristic,
+			int maxNodes) {
+		return solveMemoryBounded(initialState, heuristic, maxNodes, new SearchStatistics());
+	}
+	
+	/* Same as solveMemoryBounded(PuzzleState, Heuristic, int), but also records
+	 * how many nodes were expanded and generated in stats.
+	 */
+	public static List<PuzzleState> solveMemoryBounded(PuzzleState initialState, Heuristic heuristic,
+			int maxNodes, SearchStatistics stats) {
+		return recorded("memory-bounded", stats,
+				() -> new MemoryBoundedSearch(heuristic, maxNodes).solve(initialState, stats));
+	}
+	
+	/* Same as solveMemoryBounded(PuzzleState, Heuristic, int), but the budget is given
+	 * as an approximate number of bytes instead of a number of nodes.
+	 */
+	public static List<PuzzleState> solveWithinBytes(PuzzleState initialState, Heuristic heuristic,
+			long maxBytes) {
+		SearchStatistics stats = new SearchStatistics();
+		return recorded("memory-bounded", stats,
+				() -> MemoryBoundedSearch.withByteBudget(heuristic, maxBytes).solve(initialState, stats));
+	}
+	
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic, SearchStatistics),
+	 * but keeps all of the search's bookkeeping in native memory outside the Java
+	 * heap, which is released as soon as the search ends.  This is meant for very
+	 * large searches, where millions of node objects would make the garbage
+	 * collector pause for a long time.  See OffHeapSearch for details.
+	 */
+	public static List<PuzzleState> solveOffHeap(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return recorded("off-heap", stats, () -> new OffHeapSearch(heuristic).solve(initialState, stats));
+	}
+	
+	/* Same as solveOffHeap(), but writes a checkpoint of the search to the given
+	 * file about every intervalMillis milliseconds.  If the search is stopped,
+	 * resumeOffHeap() can continue it from the last checkpoint.  The file is
+	 * deleted once the solution is found.  A checkpoint that cannot be written
+	 * does not stop the search; it is counted in stats instead.
+	 */
+	public static List<PuzzleState> solveOffHeapWithCheckpoints(PuzzleState initialState, Heuristic heuristic,
+			Path checkpointFile, long intervalMillis, SearchStatistics stats) {
+		return recorded("off-heap", stats,
+				() -> new OffHeapSearch(heuristic, checkpointFile, intervalMillis).solve(initialState, stats));
+	}
+	
+	/* Continues a search from a checkpoint written by
+	 * solveOffHeapWithCheckpoints(), using the same heuristic, and keeps writing
+	 * checkpoints to the same file.  The work done before the checkpoint is
+	 * included in stats.
+	 */
+	public static List<PuzzleState> resumeOffHeap(Path checkpointFile, Heuristic heuristic, long intervalMillis,
+			SearchStatistics stats) {
+		return recorded("off-heap-resumed", stats,
+				() -> new OffHeapSearch(heuristic, checkpointFile, intervalMillis).resume(stats));
+	}
+	
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic, SearchStatistics),
+	 * but keeps the states the search has seen in files inside the given scratch
+	 * directory instead of in memory.  See ExternalSearch for details.
+	 */
+	public static List<PuzzleState> solveExternal(PuzzleState initialState, Heuristic heuristic,
+			Path scratchDirectory, SearchStatistics stats) {
+		return recorded("external", stats, () -> new ExternalSearch(scratchDirectory, ExternalSearch.DEFAULT_RUN_SIZE)
+				.solve(initialState, heuristic, stats));
+	}
+	
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic, SearchStatistics),
+	 * but with Partial Expansion A*, which only puts the children of a node on
+	 * the open list once they are needed.  See PartialExpansionSearch for details.
+	 */
+	public static List<PuzzleState> solvePartialExpansion(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return recorded("peastar", stats, () -> new PartialExpansionSearch(heuristic).solve(initialState, stats));
+	}
+
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic, SearchStatistics),
+	 * but expands the best batchSize nodes at a time, generating their children in
+	 * parallel.  See KBestFirstSearch for details.
+	 */
+	public static List<PuzzleState> solveBatched(PuzzleState initialState, Heuristic heuristic, int batchSize,
+			SearchStatistics stats) {
+		return recorded("kbest", stats, () -> new KBestFirstSearch(heuristic, batchSize).solve(initialState, stats));
+	}
+
+	/* Finds an optimal solution like solve(PuzzleState, Heuristic, SearchStatistics),
+	 * but stops as soon as the search reaches a state within
+	 * PerimeterSearch.DEFAULT_DEPTH moves of the solved state.  See PerimeterSearch
+	 * for details.
+	 */
+	public static List<PuzzleState> solvePerimeter(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return solvePerimeter(initialState, heuristic, PerimeterSearch.DEFAULT_DEPTH, stats);
+	}
+
+	/* Finds an optimal solution with a perimeter of the given depth.  The
+	 * perimeter is built the first time a depth is used and kept from then on.
+	 */
+	public static List<PuzzleState> solvePerimeter(PuzzleState initialState, Heuristic heuristic, int depth,
+			SearchStatistics stats) {
+		return recorded("perimeter", stats, () -> new PerimeterSearch(heuristic, depth).solve(initialState, stats));
+	}
+	
+	/* Finds an optimal solution with IDA*, which uses almost no memory.  See
+	 * IterativeDeepeningSearch for details.
+	 */
+	public static List<PuzzleState> solveIterativeDeepening(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return recorded("idastar", stats, () -> new IterativeDeepeningSearch(heuristic).solve(initialState, stats));
+	}
+
+	/* Finds an optimal solution with IDA* split across the common fork-join pool,
+	 * so that a single hard board uses every core.  See
+	 * ParallelIterativeDeepeningSearch for details.
+	 */
+	public static List<PuzzleState> solveParallelIterativeDeepening(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		return recorded("parallel-idastar", stats,
+				() -> new ParallelIterativeDeepeningSearch(heuristic).solve(initialState, stats));
+	}
+	
+	/* Finds an optimal solution by racing the engines of PortfolioSearch.standard()
+	 * against each other and returning the first solution found.  The work of
+	 * every engine is added to stats.  See PortfolioSearch for details.
+	 */
+	public static List<PuzzleState> solvePortfolio(PuzzleState initialState, SearchStatistics stats) {
+		return recorded("portfolio", stats, () -> PortfolioSearch.standard().solve(initialState, stats));
+	}
+	
+	/* Finds a solution, usually not an optimal one, with LRTA*, which commits to
+	 * one move at a time and spends at most moveBudgetNanos choosing each one.
+	 * It gives up after maxMoves moves.  Each call starts with nothing learned;
+	 * pass the same RealTimeSearch to solveRealTime(PuzzleState, RealTimeSearch,
+	 * SearchStatistics) to keep what it learns from one board to the next.  See
+	 * RealTimeSearch for details.
+	 */
+	public static List<PuzzleState> solveRealTime(PuzzleState initialState, Heuristic heuristic,
+			long moveBudgetNanos, int maxMoves, SearchStatistics stats) {
+		return solveRealTime(initialState, new RealTimeSearch(heuristic, moveBudgetNanos, maxMoves), stats);
+	}
+	
+	/* Same as above, but with the given RealTimeSearch, so the h-values it has
+	 * learned on earlier boards carry over and improve the solution.
+	 */
+	public static List<PuzzleState> solveRealTime(PuzzleState initialState, RealTimeSearch search,
+			SearchStatistics stats) {
+		return recorded("lrtastar", stats, () -> search.solve(initialState, stats));
+	}
+	
+	/* Finds a solution, usually not an optimal one, with a beam search that keeps
+	 * the best width states of each layer and spends at most layerBudgetNanos on
+	 * each layer.  It gives up after BeamSearch.DEFAULT_MAX_DEPTH layers.  See
+	 * BeamSearch for details.
+	 */
+	public static List<PuzzleState> solveBeam(PuzzleState initialState, Heuristic heuristic, int width,
+			long layerBudgetNanos, SearchStatistics stats) {
+		return solveBeam(initialState, heuristic, width, layerBudgetNanos, BeamSearch.DEFAULT_MAX_DEPTH, stats);
+	}
+	
+	/* Same as above, but gives up after maxDepth layers. */
+	public static List<PuzzleState> solveBeam(PuzzleState initialState, Heuristic heuristic, int width,
+			long layerBudgetNanos, int maxDepth, SearchStatistics stats) {
+		return recorded("beam", stats,
+				() -> new BeamSearch(heuristic, width, layerBudgetNanos, maxDepth).solve(initialState, stats));
+	}
+	
+	/* Returns the heuristic estimate of each of the given states, in the same
+	 * order.  The states are evaluated as one batch with Heuristic.evaluateAll(),
+	 * which is much faster than calling h() on each of them when there are many.
+	 */
+	public static int[] estimate(List<PuzzleState> states, Heuristic heuristic) {
+		long[] boards = new long[states.size()];
+		for (int i = 0; i < boards.length; i++) {
+			boards[i] = states.get(i).getPacked();
+		}
+		int[] estimates = new int[boards.length];
+		heuristic.evaluateAll(boards, boards.length, estimates);
+		return estimates;
+	}
+	
+	/* Finds every optimal solution to the given PuzzleState with a single search.
+	 * The returned object gives the number of optimal solutions and can stream
+	 * them one at a time.  See OptimalSolutions for details.
+	 */
+	public static OptimalSolutions findOptimalSolutions(PuzzleState initialState) {
+		return findOptimalSolutions(initialState, Heuristic.DEFAULT, new SearchStatistics());
+	}
+	
+	/* Same as findOptimalSolutions(PuzzleState), but with the given heuristic,
+	 * which must be consistent, and also records how many nodes were expanded
+	 * and generated in stats.
+	 */
+	public static OptimalSolutions findOptimalSolutions(PuzzleState initialState, Heuristic heuristic,
+			SearchStatistics stats) {
+		long start = System.nanoTime();
+		long expandedBefore = stats.getNodesExpanded();
+		OptimalSolutions solutions = OptimalSolutions.find(initialState, heuristic, stats);
+		SolveMetrics.GLOBAL.record("all-optimal", solutions.getOptimalLength(), System.nanoTime() - start,
+				stats.getNodesExpanded() - expandedBefore);
+		return solutions;
+	}
+	
+	/* Throws a CancellationException if the current thread has been interrupted.
+	 * Searches call this once per expansion so that a search that is no longer
+	 * needed, such as one that lost a PortfolioSearch race, stops right away.
+	 * The interrupt status is left set.
+	 */
+	static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("the search was interrupted");
+		}
+	}
+	
+	/* Runs a search and records how long it took, the length of the solution, and
+	 * the number of nodes it expanded in SolveMetrics.GLOBAL under the given mode.
+	 */
+	private static List<PuzzleState> recorded(String mode, SearchStatistics stats,
+			Supplier<List<PuzzleState>> search) {
+		long start = System.nanoTime();
+		long expandedBefore = stats.getNodesExpanded();
+		List<PuzzleState> solution = search.get();
+		SolveMetrics.GLOBAL.record(mode, solution.size() - 1, System.nanoTime() - start,
+				stats.getNodesExpanded() - expandedBefore);
+		return solution;
+	}
 }
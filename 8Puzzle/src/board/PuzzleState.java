@@ -1,552 +1,322 @@
 package board;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
 
-public class PuzzleState implements Comparable<PuzzleState> {
-	
+/* A single arrangement of the tiles on the board.  PuzzleState objects are
+ * immutable, so they can be shared freely between threads and used as keys
+ * in hash tables.  Everything that depends on how a state was reached during
+ * a search (its g-value, f-value, and parent) lives in SearchNode instead.
+ *
+ * The board is stored packed into a single long, with 4 bits for each
+ * location on the grid: the tile at location i (0 for the blank) is stored in
+ * bits 4 * i through 4 * i + 3.
+ */
+public final class PuzzleState {
+
 	public static final PuzzleState GOAL_STATE;
 	private static final Random random;
-	
-	private static final int[] NINE_PRIMES = {17, 19, 23, 29, 31, 37, 41, 43, 47}; // used for hash codes
 
-	/* static initializer to set the random object and the GOAL_STATE PuzzleState */
+	/* MANHATTAN[position][tile] is the Manhattan Distance of the tile when it is at
+	 * the given position.  The blank (tile 0) is given a distance of 0.
+	 */
+	private static final int[][] MANHATTAN = new int[9][9];
+
+	/* static initializer to set the random object, the Manhattan Distance table, and
+	 * the GOAL_STATE PuzzleState */
 	static {
-		ArrayList<Integer> goalPositions = new ArrayList<>();
-		for (int i = 1; i < 9; i++) {
-			goalPositions.add(i);
+		for (int position = 0; position < 9; position++) {
+			for (int tile = 1; tile < 9; tile++) {
+				int goal = tile - 1;
+				MANHATTAN[position][tile] = Math.abs(position / 3 - goal / 3) + Math.abs(position % 3 - goal % 3);
+			}
+		}
+
+		long goalTiles = 0;
+		for (int i = 0; i < 8; i++) {
+			goalTiles |= ((long) (i + 1)) << (4 * i);
 		}
-		goalPositions.add(0);
-		GOAL_STATE = new PuzzleState(goalPositions, -1, 0, null);
-		
+		GOAL_STATE = new PuzzleState(goalTiles, 8);
+
 		random = new Random();
 	}
 
-	private ArrayList<Integer> puzzle; /* the locations of each number in the puzzle */
-	private PuzzleState parent; /* reference to the "parent" puzzle */
-	private int parentOperation; // will be -1 if the puzzle represents some "special state", like the
-	// initial state or the goal state.
-	private int gVal; // will be -1 for the "goal state".
-	private int fVal; // Computed once since it never changes.
+	private final long tiles; /* the tile at each location in the puzzle, packed 4 bits each */
+	private final int blankPosition;
+	private final int hashCode; // computed once since it never changes
 
-	/* Standard constructor.  Also computes the f-value of the PuzzleState and stores it in a 
-	 * variable.
+	/* Creates a PuzzleState from the tile at each location, in row-major order,
+	 * with 0 for the blank.
 	 */
-	public PuzzleState(ArrayList<Integer> puzzle, int parentOperation, int gVal, PuzzleState parent) {
-		this.puzzle = puzzle;
-		this.parentOperation = parentOperation;
-		this.gVal = gVal;
-		this.parent = parent;
-		this.fVal = this.f();
+	public PuzzleState(List<Integer> puzzle) {
+		long packed = 0;
+		int blank = -1;
+		for (int i = 0; i < 9; i++) {
+			int tile = puzzle.get(i);
+			packed |= ((long) tile) << (4 * i);
+			if (tile == 0) {
+				blank = i;
+			}
+		}
+		this.tiles = packed;
+		this.blankPosition = blank;
+		this.hashCode = computeHashCode(packed);
 	}
 
-	/* Sets the current PuzzleState to have no parent and a g-value of 0. */
-	public PuzzleState(ArrayList<Integer> puzzle) {
-		this(puzzle, -1, 0, null);
-	}
-	
-	/* No-arg constructor.  This creates a scrambled PuzzleState by applying 
-	 * between 40 and 75 random moves to the puzzle.*/
+	/* No-arg constructor.  This creates a scrambled PuzzleState by applying
+	 * between 40 and 75 random moves to the solved puzzle, never undoing the
+	 * previous move.*/
 	public PuzzleState() {
-		this(GOAL_STATE);
+		PuzzleState scrambled = GOAL_STATE;
+		int previousOp = -1;
 		int numMoves = (random.nextInt(36) + 40);
 		for (int i = 0; i < numMoves; i++) {
-			ArrayList<Integer> operations = getPossibleOperationsExcludeInverse();
-			int op = operations.get((int)(Math.random() * operations.size()));
-			performOperation(this, op);
+			ArrayList<Integer> operations = scrambled.getPossibleOperations();
+			if (previousOp != -1) {
+				operations.remove(Integer.valueOf(BoardOperations.inverseOperation(previousOp)));
+			}
+			int op = operations.get(random.nextInt(operations.size()));
+			scrambled = scrambled.getNewState(op);
+			previousOp = op;
 		}
-		gVal = 0;
+		this.tiles = scrambled.tiles;
+		this.blankPosition = scrambled.blankPosition;
+		this.hashCode = scrambled.hashCode;
 	}
 
-	/* Copy Constructor.  The parents are aliased because it would be very
-	 * time consuming to recursively copy the parent.  A deep copy of the puzzle
-	 * is created.
-	 */
-	public PuzzleState(PuzzleState other) {
-		parent = other.parent;
-		puzzle = new ArrayList<>(other.puzzle);
-		parentOperation = other.parentOperation;
-		gVal = other.gVal;
+	private PuzzleState(long tiles, int blankPosition) {
+		this.tiles = tiles;
+		this.blankPosition = blankPosition;
+		this.hashCode = computeHashCode(tiles);
 	}
 
-	/* This method examines the current object, finds the position of the blank tile,
-	 * and based on the position of the blank, it determines which operations are 
-	 * possible to make.  For example, if the blank is on the left side of the GUI,
-	 * then it would be impossible to perform the operation MOVE_BLANK_LEFT, so
-	 * that operation would not be added to the returned ArrayList.  Additionally,
-	 * this method excludes the "inverse" operation, meaning the operation that was
-	 * used to reach the current PuzzleState object.  This is used in places where it
-	 * would be pointless to check the previous state again.
-	 */
-	public ArrayList<Integer> getPossibleOperationsExcludeInverse() {
-		
-		ArrayList<Integer> possibleOperations = getPossibleOperationsIncludeInverse();
-		
-		if (parentOperation == -1) { // the PuzzleState has no parent (it was just scrambled)
-			return possibleOperations; // no operation to remove
+	/* Creates a PuzzleState from the packed form returned by getPacked(). */
+	public static PuzzleState fromPacked(long tiles) {
+		for (int i = 0; i < 9; i++) {
+			if (((tiles >>> (4 * i)) & 0xF) == 0) {
+				return new PuzzleState(tiles, i);
+			}
 		}
-		
-		/* otherwise, remove the inverse of the parent operation.  Integer.valueOf() is necessary
-		 * since it would otherwise attempt to remove the index given by the argument */
-		possibleOperations.remove(Integer.valueOf(BoardOperations.inverseOperation(parentOperation)));
-		
-		return possibleOperations;
+		throw new IllegalArgumentException(Long.toHexString(tiles) + " has no blank");
 	}
-	
+
 	/* This method examines the current object, finds the position of the blank tile,
-	 * and based on the position of the blank, it determines which operations are 
+	 * and based on the position of the blank, it determines which operations are
 	 * possible to make.  For example, if the blank is on the left side of the GUI,
 	 * then it would be impossible to perform the operation MOVE_BLANK_LEFT, so
 	 * that operation would not be added to the returned ArrayList.
 	 */
-	public ArrayList<Integer> getPossibleOperationsIncludeInverse() {
-		
-		int posOfBlank = puzzle.indexOf(0);
-		ArrayList<Integer> possibleOperations = new ArrayList<>();
-		
+	public ArrayList<Integer> getPossibleOperations() {
+
+		ArrayList<Integer> possibleOperations = new ArrayList<>(4);
+
 		/* based on the position of the blank, add all possible operations */
-		switch(posOfBlank) {
-		case 0:
-			possibleOperations.add(BoardOperations.MOVE_BLANK_DOWN);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_RIGHT);
-			break;
-		case 1: 
-			possibleOperations.add(BoardOperations.MOVE_BLANK_DOWN);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_RIGHT);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_LEFT);
-			break;
-		case 2:
-			possibleOperations.add(BoardOperations.MOVE_BLANK_DOWN);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_LEFT);
-			break;
-		case 3:
-			possibleOperations.add(BoardOperations.MOVE_BLANK_DOWN);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_RIGHT);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_UP);
-			break;
-		case 4:
-			possibleOperations.add(BoardOperations.MOVE_BLANK_DOWN);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_RIGHT);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_UP);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_LEFT);
-			break;
-		case 5:
+		if (blankPosition < 6) {
 			possibleOperations.add(BoardOperations.MOVE_BLANK_DOWN);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_UP);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_LEFT);
-			break;
-		case 6:
-			possibleOperations.add(BoardOperations.MOVE_BLANK_UP);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_RIGHT);
-			break;
-		case 7:
-			possibleOperations.add(BoardOperations.MOVE_BLANK_UP);
+		}
+		if (blankPosition % 3 != 2) {
 			possibleOperations.add(BoardOperations.MOVE_BLANK_RIGHT);
-			possibleOperations.add(BoardOperations.MOVE_BLANK_LEFT);
-			break;
-		case 8:
+		}
+		if (blankPosition > 2) {
 			possibleOperations.add(BoardOperations.MOVE_BLANK_UP);
+		}
+		if (blankPosition % 3 != 0) {
 			possibleOperations.add(BoardOperations.MOVE_BLANK_LEFT);
 		}
-		
+
 		return possibleOperations;
-		
-	}
 
-	/* getters */
-	
-	public ArrayList<Integer> getBoardState() {
-		return new ArrayList<>(puzzle);
-	}
-	
-	/* A copy is not made, so the caller must not modify the result of
-	 * a call to this getter.
-	 */
-	public PuzzleState getParent() {
-		return parent;
-	}
-	
-	public int getParentOperation() {
-		return parentOperation;
-	}
-	
-	/* setters */
-	
-	public void setGValue(int gVal) {
-		this.gVal = gVal;
-	}
-	
-	public void setParentOperation(int op) {
-		this.parentOperation = op;
-	}
-	
-	public void setParent(PuzzleState parent) {
-		this.parent = parent;
 	}
-	
-	/* Performs the given operation on the given PuzzleState.  This method
-	 * does not return anything, because it modifies the first parameter 
-	 * instead.  This method is very similar to the getNewState methods, 
-	 * except that instead of returning the new PuzzleState, this modifies
-	 * the parameter.  The caller of this method must ensure that operation
-	 * is valid given the position of the blank.
+
+	/* Returns true if the given operation can be performed given the position of
+	 * the blank.
 	 */
-	private void performOperation(PuzzleState initialState, int operation) {
-		/* find where the blank is */
-		int posOfBlank = puzzle.indexOf(0);
-		ArrayList<Integer> newPositions = new ArrayList<>();
-		
-		/* perform modifications based on the position of the blank */
+	public boolean canPerform(int operation) {
 		switch(operation) {
 		case BoardOperations.MOVE_BLANK_UP:
-			for (int i = 0; i < posOfBlank - 3; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			for (int i = (posOfBlank - 2); i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank - 3));
-			for (int i = (posOfBlank + 1); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return blankPosition > 2;
 		case BoardOperations.MOVE_BLANK_DOWN:
-			for (int i = 0; i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank + 3));
-			for (int i = (posOfBlank + 1); i < posOfBlank + 3; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			for (int i = (posOfBlank + 4); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return blankPosition < 6;
 		case BoardOperations.MOVE_BLANK_LEFT:
-			for (int i = 0; i < posOfBlank - 1; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			newPositions.add(puzzle.get(posOfBlank - 1));
-			for (int i = (posOfBlank + 1); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return blankPosition % 3 != 0;
 		case BoardOperations.MOVE_BLANK_RIGHT:
-			for (int i = 0; i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank + 1));
-			newPositions.add(0);
-			for (int i = (posOfBlank + 2); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return blankPosition % 3 != 2;
 		default:
-			throw new IllegalArgumentException(operation + "is not a valid operation!");
+			return false;
+		}
+	}
+
+	/* getters */
+
+	public ArrayList<Integer> getBoardState() {
+		ArrayList<Integer> puzzle = new ArrayList<>(9);
+		for (int i = 0; i < 9; i++) {
+			puzzle.add(getTile(i));
 		}
-		
-		/* Change the puzzle of the PuzzleState parameter to the modified one, and then
-		 * update the parent operation and g-value of the new PuzzleState.
-		 */
-		initialState.puzzle = newPositions;
-		initialState.parentOperation = operation;
-		initialState.gVal++;
+		return puzzle;
+	}
+
+	/* Returns the tile at the given location on the grid (0 for the blank). */
+	public int getTile(int position) {
+		return (int) ((tiles >>> (4 * position)) & 0xF);
+	}
+
+	public int getBlankPosition() {
+		return blankPosition;
 	}
-	
+
+	/* Returns the board packed into a long, 4 bits per location.  This is a
+	 * compact key for the board that can be turned back into a PuzzleState with
+	 * fromPacked().
+	 */
+	public long getPacked() {
+		return tiles;
+	}
+
 	/* Returns a new PuzzleState object which is the result of applying the
-	 * operation given as a parameter to the current object.  The current 
+	 * operation given as a parameter to the current object.  The current
 	 * PuzzleState will be returned if the operation passed to the method
 	 * is not valid given the position of the blank.
 	 */
-	public PuzzleState getNewStateIncludeInverse(int operation) {
-		
+	public PuzzleState getNewState(int operation) {
+
 		/* make sure the operation is valid given the position of the blank */
-		if (!getPossibleOperationsIncludeInverse().contains(operation)) {
+		if (!canPerform(operation)) {
 			return this;
 		}
-		
-		int posOfBlank = puzzle.indexOf(0);
-		ArrayList<Integer> newPositions = new ArrayList<>();
-		
-		/* apply changes for each case */
-		switch(operation) {
-		case BoardOperations.MOVE_BLANK_UP:
-			for (int i = 0; i < posOfBlank - 3; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			for (int i = (posOfBlank - 2); i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank - 3));
-			for (int i = (posOfBlank + 1); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
-		case BoardOperations.MOVE_BLANK_DOWN:
-			for (int i = 0; i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank + 3));
-			for (int i = (posOfBlank + 1); i < posOfBlank + 3; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			for (int i = (posOfBlank + 4); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
-		case BoardOperations.MOVE_BLANK_LEFT:
-			for (int i = 0; i < posOfBlank - 1; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			newPositions.add(puzzle.get(posOfBlank - 1));
-			for (int i = (posOfBlank + 1); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
-		case BoardOperations.MOVE_BLANK_RIGHT:
-			for (int i = 0; i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank + 1));
-			newPositions.add(0);
-			for (int i = (posOfBlank + 2); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
-		default:
-			throw new IllegalArgumentException(operation + "is not a valid operation!");
-		}
-		return new PuzzleState(newPositions, operation, gVal + 1, this);
+
+		int target = blankPosition + offset(operation);
+
+		/* the tile at the target location slides into the blank's location */
+		long tile = (tiles >>> (4 * target)) & 0xF;
+		long newTiles = (tiles & ~(0xFL << (4 * target))) | (tile << (4 * blankPosition));
+		return new PuzzleState(newTiles, target);
 	}
 
-	/* Returns a new PuzzleState object which is the result of applying the
-	 * operation given as a parameter to the current object.  This excludes
-	 * the inverse operation, meaning if the parameter is the inverse operation
-	 * of whatever operation was last applied to reach the current PuzzleState,
-	 * then the current PuzzleState will be returned.  The current PuzzleState 
-	 * will also be returned if the operation passed to the method
-	 * is not valid given the position of the blank.
+	/* Returns how far the blank's position changes when the given operation is
+	 * performed.
 	 */
-	public PuzzleState getNewStateExcludeInverse(int operation) {
-		
-		/* make sure the operation is valid and not the inverse of the previous
-		 * operation
-		 */
-		if (!(getPossibleOperationsExcludeInverse().contains(operation))) {
-			return this;
-		}
-		
-		int posOfBlank = puzzle.indexOf(0);
-		ArrayList<Integer> newPositions = new ArrayList<>();
-		
-		/* apply changes based on the operation */
+	private static int offset(int operation) {
 		switch(operation) {
 		case BoardOperations.MOVE_BLANK_UP:
-			for (int i = 0; i < posOfBlank - 3; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			for (int i = (posOfBlank - 2); i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank - 3));
-			for (int i = (posOfBlank + 1); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return -3;
 		case BoardOperations.MOVE_BLANK_DOWN:
-			for (int i = 0; i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank + 3));
-			for (int i = (posOfBlank + 1); i < posOfBlank + 3; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			for (int i = (posOfBlank + 4); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return 3;
 		case BoardOperations.MOVE_BLANK_LEFT:
-			for (int i = 0; i < posOfBlank - 1; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(0);
-			newPositions.add(puzzle.get(posOfBlank - 1));
-			for (int i = (posOfBlank + 1); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return -1;
 		case BoardOperations.MOVE_BLANK_RIGHT:
-			for (int i = 0; i < posOfBlank; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			newPositions.add(puzzle.get(posOfBlank + 1));
-			newPositions.add(0);
-			for (int i = (posOfBlank + 2); i < 9; i++) {
-				newPositions.add(puzzle.get(i));
-			}
-			break;
+			return 1;
 		default:
-			throw new IllegalArgumentException(operation + "is not a valid operation!");
+			throw new IllegalArgumentException(operation + " is not a valid operation!");
 		}
-		
-		return new PuzzleState(newPositions, operation, gVal + 1, this);
-		
 	}
 
 	/* This method returns an ArrayList of all PuzzleState objects that are
 	 * reachable from the current PuzzleState by making a single move.
-	 * This excludes the inverse of whichever move was used to reach the 
-	 * current PuzzleState, because the only place this method is used is
-	 * in the algorithm to find the optimal solution, and it would be
-	 * inefficient to examine some states multiple times.
 	 */
-	public ArrayList<PuzzleState> children() {
-		ArrayList<PuzzleState> children = new ArrayList<>(3);
-		for (int op : getPossibleOperationsExcludeInverse()) {
-			children.add(getNewStateExcludeInverse(op));
+	public ArrayList<PuzzleState> neighbors() {
+		ArrayList<PuzzleState> neighbors = new ArrayList<>(4);
+		for (int op : getPossibleOperations()) {
+			neighbors.add(getNewState(op));
 		}
-		return children;
-	}
-	
-	/* returns the g-value (the number of steps that have been
-	 * taken to reach the current PuzzleState).
-	 */
-	public int g() {
-		return gVal;
+		return neighbors;
 	}
 
-	/* Computes the heuristic value (h-value), which is calculated
-	 * as the sum of the Manhattan Distances of all tiles on the board
-	 * and the number of direct tile reversals.
+	/* Returns the operation that turns this PuzzleState into the given one, or -1
+	 * if the two are not neighbors.
 	 */
-	public int h() {
-		return sumOfManhattanDistances() + numTileReversals();
+	public int operationTo(PuzzleState other) {
+		for (int op : getPossibleOperations()) {
+			if (getNewState(op).equals(other)) {
+				return op;
+			}
+		}
+		return -1;
 	}
 
-	/* Computes the f value, as the sum of the g-value (the number of
-	 * steps that have been taken to reach the current PuzzleState)
-	 * and the h-value (the heuristic)
+	/* Returns true if the solved state can be reached from this PuzzleState.
+	 * Exactly half of all arrangements of the tiles can be solved.  Every move
+	 * either leaves the order of the tiles (read in row-major order, skipping
+	 * the blank) alone or moves one tile past two others, so the parity of the
+	 * number of "inversions" (pairs of tiles that are in the wrong order) never
+	 * changes.  The solved state has no inversions, so a PuzzleState can only be
+	 * solved if it has an even number of them.
 	 */
-	public int f() {
-		return h() + gVal;
+	public boolean isSolvable() {
+		int inversions = 0;
+		for (int i = 0; i < 9; i++) {
+			for (int j = i + 1; j < 9; j++) {
+				int first = getTile(i);
+				int second = getTile(j);
+				if (first != 0 && second != 0 && first > second) {
+					inversions++;
+				}
+			}
+		}
+		return (inversions % 2) == 0;
 	}
 
-	/* One part of the heuristic computed for each PuzzleState.  
+	/* One part of the default heuristic.
 	 * Tile Reversals are undesirable because they require
 	 * longer cycles of moves to fix.
 	 */
 	public int numTileReversals() {
-		
+
+		int[] positionOf = new int[9];
+		for (int position = 0; position < 9; position++) {
+			positionOf[getTile(position)] = position;
+		}
+
 		int tileReversalCount = 0;
-		Set<Integer> finishedSet = new HashSet<>();
-		
+		boolean[] finished = new boolean[9];
+
 		for (int i = 1; i < 8; i++) {
-			
-			if (finishedSet.contains(i)) {
+
+			if (finished[i]) {
 				continue;
 			}
-			finishedSet.add(i); 
-			
-			int currPos = puzzle.indexOf(i);
+			finished[i] = true;
+
+			int currPos = positionOf[i];
 			if (currPos == (i - 1)) {
 				continue;
 			}
-			
-			int currRow = currPos / 3;
-			int currCol = currPos % 3;
-			int goalRow = (i - 1) / 3;
-			int goalCol = (i - 1) % 3;
-			int horizDistance = Math.abs(currCol - goalCol);
-			int vertDistance = Math.abs(currRow - goalRow);
-			int manhattanDistance = (horizDistance + vertDistance);
-			
-			if (manhattanDistance > 1) {
+
+			if (MANHATTAN[currPos][i] > 1) {
 				continue;
 			}
 			int shouldHave = (currPos + 1);
-			if (puzzle.get(i - 1) == shouldHave) {
+			if (getTile(i - 1) == shouldHave) {
 				tileReversalCount += 2;
-				finishedSet.add(shouldHave);
+				finished[shouldHave] = true;
 			}
 		}
 		return tileReversalCount;
-		
+
 	}
 
-	/* One part of the heuristic computed for each PuzzleState.  This
-	 * method adds up the Manhattan Distances (described in a comment
-	 * above the method manhattanDistance()) for every tile on the
-	 * grid, including the blank.  
+	/* One part of the default heuristic.  This method adds up the
+	 * Manhattan Distances for every tile on the grid.  The Manhattan
+	 * Distance is the number of moves that a single tile on the grid
+	 * is away from its solved location: the sum of the horizontal
+	 * distance and the vertical distance between the tile and its
+	 * destination.  The blank is left out: every move changes the
+	 * blank's distance as well as the moved tile's, so counting both
+	 * would overestimate the number of moves left.
 	 */
-	private int sumOfManhattanDistances() {
-		
+	public int sumOfManhattanDistances() {
+
 		int sum = 0;
-		for (int i = 0; i < 9; i++) {
-			sum += manhattanDistance(i);
+		for (int position = 0; position < 9; position++) {
+			sum += MANHATTAN[position][getTile(position)];
 		}
 		return sum;
-		
-	}
 
-	/* Computes the Manhattan Distance for a single digit on
-	 * the grid.  The Manhattan Distance is the number of moves
-	 * that a single tile on the grid is away from its solved
-	 * location.  This is the sum of the horizontal distance
-	 * and the vertical distance between the tile and its 
-	 * destination.
-	 */
-	private int manhattanDistance(int digit) {
-		
-		/* compute the actual position of the tile corresponding to 
-		 * the parameter digit
-		 */
-		int position = puzzle.indexOf(digit);
-		int row = position / 3;
-		int col = position % 3;
-		
-		/* Determine where the tile corresponding to the parameter
-		 * digit will be in the solved state.
-		 */
-		int goalCol;
-		int goalRow;
-		
-		if (digit == 0) { // the blank goes in the last spot on the grid
-			goalRow = 2;
-			goalCol = 2;
-		} else { // normal (non-blank) tiles
-			goalRow = (digit - 1) / 3;
-			goalCol = (digit - 1) % 3;
-		}
-		
-		/* compute the vertical and horizontal distances from the actual
-		 * location to the "goal" location, and add them together.
-		 */
-		int vertDistance = Math.abs(row - goalRow);
-		int horizDistance = Math.abs(col - goalCol);
-		
-		return vertDistance + horizDistance;
-		
 	}
 
 	/* Two PuzzleState objects are considered equal if every location on
-	 * the puzzle is the same.  That means that the f-value of each 
-	 * PuzzleState is not involved in the check for equality.  This is a 
-	 * rare case where equals and compareTo will not check for the same
-	 * things.  The compareTo method will be used when ordering the 
-	 * PuzzleStates according to how "promising" they are within the
-	 * PuzzleSolver.solve() method.  The equals method will be used when
-	 * checking if a given PuzzleState has already been examined or not,
-	 * and in that case we want to check for puzzles that look the same.
+	 * the puzzle is the same.
 	 */
 	public boolean equals(Object other) {
 		if (this == other) {
@@ -556,17 +326,20 @@ public class PuzzleState implements Comparable<PuzzleState> {
 			return false;
 		}
 		PuzzleState state = (PuzzleState) other;
-		return puzzle.equals(state.puzzle);
+		return tiles == state.tiles;
 	}
 
-	/* 9 unique primes (defined at the top of the file) are multiplied by
-	 * each location on the grid in order to avoid collisions in the hash
-	 * table as much as possible.
-	 */
 	public int hashCode() {
+		return hashCode;
+	}
+
+	/* The board is read as a 9-digit number in base 9, which fits in an int
+	 * and is different for every board.
+	 */
+	private static int computeHashCode(long tiles) {
 		int hashCode = 0;
-		for (int i = 0; i < 9; i++) {
-			hashCode += (NINE_PRIMES[i] * puzzle.get(i));
+		for (int i = 8; i >= 0; i--) {
+			hashCode = (hashCode * 9) + (int) ((tiles >>> (4 * i)) & 0xF);
 		}
 		return hashCode;
 	}
@@ -575,29 +348,18 @@ public class PuzzleState implements Comparable<PuzzleState> {
 	 * the GUI was created.
 	 */
 	public String toString() {
-		int blankLocation = puzzle.indexOf(0);
-		String s = "[";
-		s += ((blankLocation == 0)? " " : (puzzle.get(0))) + " ";
-		s += ((blankLocation == 1)? " " : (puzzle.get(1))) + " ";
-		s += ((blankLocation == 2)? " " : (puzzle.get(2))) + "]\n";
-		s += "[" + ((blankLocation == 3)? " " : (puzzle.get(3))) + " ";
-		s += ((blankLocation == 4)? " " : (puzzle.get(4))) + " ";
-		s += ((blankLocation == 5)? " " : (puzzle.get(5))) + "]\n";
-		s += "[" + ((blankLocation == 6)? " " : (puzzle.get(6))) + " ";
-		s += ((blankLocation == 7)? " " : (puzzle.get(7))) + " ";
-		s += ((blankLocation == 8)? " " : (puzzle.get(8))) + "]";
+		String s = "";
+		for (int row = 0; row < 3; row++) {
+			s += "[";
+			for (int col = 0; col < 3; col++) {
+				int tile = getTile(3 * row + col);
+				s += ((tile == 0) ? " " : String.valueOf(tile)) + ((col < 2) ? " " : "]");
+			}
+			if (row < 2) {
+				s += "\n";
+			}
+		}
 		return s;
 	}
 
-	/* Two PuzzleStates will be compared according to how "promising" each one
-	 * is.  This metric is calculated for a given PuzzleState object as the 
-	 * sum of its h-value (which estimates how close it is to the solved state) 
-	 * and its g-value (which is the number of moves that have been performed on 
-	 * it so far).
-	 */
-	@Override
-	public int compareTo(PuzzleState other) {
-		return (fVal - other.fVal);
-	}
-	
 }
@@ -0,0 +1,197 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* A real-time search based on LRTA* (Learning Real-Time A*).  Rather than
+ * planning the whole solution before making the first move, it commits to one
+ * move at a time, and each move is chosen within a fixed time budget:
+ *
+ *   1. Each neighbor of the current state is scored by looking ahead from it
+ *      with a depth-limited search and taking the lowest g + h found at the
+ *      edge of the lookahead.  The lookahead starts at depth 0 (just the
+ *      heuristic value of the neighbor) and gets one move deeper at a time
+ *      for as long as the time budget allows.
+ *   2. The h-value of the current state is raised to 1 plus the best score,
+ *      if that is higher, and stored in a table of learned h-values.
+ *   3. The blank moves to the neighbor with the best score.
+ *
+ * Learning is what keeps the search from going around in circles: every time
+ * it comes back to a state, the state looks worse than before, until the
+ * search is pushed out of the area.  The solutions are usually not optimal,
+ * but the time per move and the memory used (the learned table, which has a
+ * fixed maximum size) are both bounded no matter how hard the puzzle is.
+ *
+ * The learned table is kept between calls to solve(), so solving boards again
+ * with the same RealTimeSearch gets better solutions over time.  A
+ * RealTimeSearch must only be used by one thread at a time.
+ */
+public class RealTimeSearch {
+
+	/* The default largest number of learned h-values that are kept. */
+	public static final int DEFAULT_MAX_LEARNED = 1 << 20;
+
+	private static final int MAX_LOOKAHEAD = 30;
+
+	/* returned by the lookahead when the time budget runs out */
+	private static final int OUT_OF_TIME = -1;
+
+	private final Heuristic heuristic;
+	private final long moveBudgetNanos;
+	private final int maxMoves;
+	private final int maxLearned;
+
+	/* learned h-values, keyed by packed board */
+	private final Map<Long, Integer> learned = new HashMap<>();
+
+	/* Creates a search that spends at most moveBudgetNanos choosing each move,
+	 * and gives up after maxMoves moves.
+	 */
+	public RealTimeSearch(Heuristic heuristic, long moveBudgetNanos, int maxMoves) {
+		this(heuristic, moveBudgetNanos, maxMoves, DEFAULT_MAX_LEARNED);
+	}
+
+	/* Same as above, but keeps at most maxLearned learned h-values. */
+	public RealTimeSearch(Heuristic heuristic, long moveBudgetNanos, int maxMoves, int maxLearned) {
+		this.heuristic = heuristic;
+		this.moveBudgetNanos = moveBudgetNanos;
+		this.maxMoves = maxMoves;
+		this.maxLearned = maxLearned;
+	}
+
+	/* Returns a solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve(), with any loops the search made along the way cut
+	 * out.  An IllegalArgumentException is thrown if the puzzle cannot be
+	 * solved, and an IllegalStateException if it is not solved within maxMoves
+	 * moves.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+
+		List<PuzzleState> trail = new ArrayList<>();
+		trail.add(initialState);
+		PuzzleState current = initialState;
+		PuzzleState previous = null;
+
+		while (!current.equals(PuzzleState.GOAL_STATE)) {
+			if (trail.size() > maxMoves) {
+				throw new IllegalStateException("no solution was found within " + maxMoves + " moves");
+			}
+			PuzzleSolver.checkCancelled();
+			long deadline = System.nanoTime() + moveBudgetNanos;
+
+			List<PuzzleState> neighbors = current.neighbors();
+			stats.nodeExpanded();
+			stats.nodesGenerated(neighbors.size());
+
+			/* score every neighbor at depth 0, then deeper while there is time */
+			int[] scores = new int[neighbors.size()];
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] = h(neighbors.get(i));
+			}
+			for (int depth = 1; depth <= MAX_LOOKAHEAD && System.nanoTime() < deadline; depth++) {
+				int[] deeper = new int[scores.length];
+				boolean complete = true;
+				for (int i = 0; i < deeper.length && complete; i++) {
+					deeper[i] = lookahead(neighbors.get(i), current, 0, depth, deadline, stats);
+					complete = deeper[i] != OUT_OF_TIME;
+				}
+				if (!complete) {
+					break;
+				}
+				scores = deeper;
+			}
+
+			/* pick the best neighbor, avoiding an immediate step back on ties */
+			int best = -1;
+			for (int i = 0; i < scores.length; i++) {
+				if (best == -1 || scores[i] < scores[best]
+						|| (scores[i] == scores[best] && neighbors.get(best).equals(previous))) {
+					best = i;
+				}
+			}
+			learn(current, 1 + scores[best]);
+
+			previous = current;
+			current = neighbors.get(best);
+			trail.add(current);
+		}
+
+		return withoutLoops(trail);
+	}
+
+	/* Returns the lowest g + h found by a depth-first search of the given
+	 * number of moves below the state (with g counted from the state), or
+	 * OUT_OF_TIME if the deadline passes first.
+	 */
+	private int lookahead(PuzzleState state, PuzzleState parent, int g, int depth, long deadline,
+			SearchStatistics stats) {
+		if (state.equals(PuzzleState.GOAL_STATE)) {
+			return g;
+		}
+		if (g == depth) {
+			return g + h(state);
+		}
+		if (System.nanoTime() >= deadline) {
+			return OUT_OF_TIME;
+		}
+
+		List<PuzzleState> children = state.neighbors();
+		stats.nodeExpanded();
+		stats.nodesGenerated(children.size() - 1);
+		int lowest = Integer.MAX_VALUE;
+		for (PuzzleState child : children) {
+			if (child.equals(parent)) {
+				continue;
+			}
+			int score = lookahead(child, state, g + 1, depth, deadline, stats);
+			if (score == OUT_OF_TIME) {
+				return OUT_OF_TIME;
+			}
+			lowest = Math.min(lowest, score);
+		}
+		return lowest;
+	}
+
+	/* Returns the learned h-value of the state, or its heuristic value if none
+	 * has been learned.
+	 */
+	private int h(PuzzleState state) {
+		Integer value = learned.get(state.getPacked());
+		return (value != null) ? value : heuristic.h(state);
+	}
+
+	/* Raises the learned h-value of the state to the given value, unless the
+	 * table is full and the state is not in it yet.
+	 */
+	private void learn(PuzzleState state, int value) {
+		if (value <= h(state)) {
+			return;
+		}
+		Long key = state.getPacked();
+		if (learned.size() < maxLearned || learned.containsKey(key)) {
+			learned.put(key, value);
+		}
+	}
+
+	/* Returns the trail with every loop removed: whenever a state appears more
+	 * than once, everything between its first and last appearance is dropped.
+	 */
+	private static List<PuzzleState> withoutLoops(List<PuzzleState> trail) {
+		Map<PuzzleState, Integer> lastIndex = new HashMap<>();
+		for (int i = 0; i < trail.size(); i++) {
+			lastIndex.put(trail.get(i), i);
+		}
+		List<PuzzleState> path = new ArrayList<>();
+		for (int i = 0; i < trail.size(); i++) {
+			path.add(trail.get(i));
+			i = lastIndex.get(trail.get(i));
+		}
+		return path;
+	}
+
+}
@@ -0,0 +1,397 @@
+package board;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.stream.IntStream;
+
+/* Checks the solvers against every solvable 8-Puzzle, all 181,440 of them.
+ * A breadth-first search from the solved state first finds the true number of
+ * moves needed for each state.  Then each solver mode solves every state in
+ * parallel, and a state fails if:
+ *
+ *   - the solution does not start at the state, end at the solved state, or
+ *     make only legal moves,
+ *   - the solution is longer (or shorter) than the true number of moves,
+ *   - the solver expanded more nodes than the mode's node budget,
+ *   - the solve took longer than the per-state time budget, or
+ *   - (optimal-solutions only) the number of optimal solutions found is not
+ *     the number of shortest paths the breadth-first search counted.
+ *
+ * A mode also fails if solving all of the states took longer than the total
+ * time budget, or if it expanded more nodes per state on average than its
+ * mean node budget.  The node budgets are set a little above what each mode
+ * expands today, on its hardest state and on average, so a change that makes
+ * a solver search noticeably more (or lose optimality) is caught right away.
+ * The program exits with status 1 if anything failed, so it can be used as a
+ * gate before merging any change to the solvers.
+ *
+ * The external and checkpoint-resume modes go through files for every state,
+ * and the memory-bounded search is several times slower than A*, so by
+ * default those modes only check a sample of the states; --stride 1 makes
+ * them check all of them.
+ *
+ * Usage: RegressionSuite [options] [mode ...]
+ *   --stride N            only check every Nth state (by default 1, or the
+ *                         mode's own stride for the modes that use files)
+ *   --max-millis-per-state M
+ *   --max-total-seconds S
+ *   --max-nodes N         override the node budgets of every mode
+ * With no modes given, every mode is checked.
+ */
+public class RegressionSuite {
+
+	/* A solver that the suite can run, recording its work in stats. */
+	private interface Mode {
+		List<PuzzleState> solve(PuzzleState state, SearchStatistics stats);
+	}
+
+	private static final Map<String, Mode> MODES = new LinkedHashMap<>();
+	private static final Map<String, Integer> STRIDES = new HashMap<>();
+	private static final Map<String, Long> NODE_BUDGETS = new HashMap<>();
+	private static final Map<String, Double> MEAN_NODE_BUDGETS = new HashMap<>();
+
+	/* the number of different shortest paths from each state to the solved
+	 * state, filled in by distancesToGoal() before any mode runs */
+	private static final Map<PuzzleState, Long> SHORTEST_PATHS = new HashMap<>();
+
+	/* the node budget given to the memory-bounded search, small enough that it
+	 * has to drop nodes on the harder states */
+	private static final int MEMORY_BOUNDED_NODES = 2000;
+
+	/* the default strides of the slower modes */
+	private static final int MEMORY_BOUNDED_STRIDE = 4;
+	private static final int EXTERNAL_STRIDE = 50;
+	private static final int CHECKPOINT_STRIDE = 5;
+
+	/* how many nodes the checkpoint-resume mode lets a search expand before
+	 * stopping it, which is after its first checkpoint is written */
+	private static final int CHECKPOINT_STOP_AFTER = 1500;
+
+	/* static initializer to register the modes and their node budgets */
+	static {
+		Heuristic walkingDistance = new WalkingDistanceHeuristic();
+		Heuristic dualPatternDatabase = new DualHeuristic(new PatternDatabaseHeuristic());
+		/* the external search makes (and removes) a directory of its own in here */
+		Path scratchDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+		register("astar", 16000, 700,
+				(state, stats) -> PuzzleSolver.solve(state, Heuristic.DEFAULT, stats));
+		register("astar-walking-distance", 10500, 440,
+				(state, stats) -> PuzzleSolver.solve(state, walkingDistance, stats));
+		register("reusable-solver", 16000, 700,
+				(state, stats) -> PuzzleSolver.solveReusing(state, Heuristic.DEFAULT, stats));
+		register("off-heap", 16000, 700,
+				(state, stats) -> PuzzleSolver.solveOffHeap(state, Heuristic.DEFAULT, stats));
+		register("checkpoint-resume", CHECKPOINT_STRIDE, 16000, 700, RegressionSuite::checkpointAndResume);
+		/* the external search starts over each time it raises its bound, like IDA* */
+		register("external", EXTERNAL_STRIDE, 40000, 2300,
+				(state, stats) -> PuzzleSolver.solveExternal(state, Heuristic.DEFAULT, scratchDirectory, stats));
+		register("memory-bounded", MEMORY_BOUNDED_STRIDE, 45000, 1000,
+				(state, stats) -> PuzzleSolver.solveMemoryBounded(state, Heuristic.DEFAULT, MEMORY_BOUNDED_NODES,
+						stats));
+		register("optimal-solutions", 29000, 1450, RegressionSuite::allOptimalSolutions);
+		register("partial-expansion", 20000, 900,
+				(state, stats) -> PuzzleSolver.solvePartialExpansion(state, Heuristic.DEFAULT, stats));
+		register("k-best", 15000, 830,
+				(state, stats) -> PuzzleSolver.solveBatched(state, Heuristic.DEFAULT, KBestFirstSearch.DEFAULT_BATCH_SIZE,
+						stats));
+		register("perimeter", 2800, 115,
+				(state, stats) -> PuzzleSolver.solvePerimeter(state, Heuristic.DEFAULT, stats));
+		register("idastar-walking-distance", 20000, 780,
+				(state, stats) -> PuzzleSolver.solveIterativeDeepening(state, walkingDistance, stats));
+		register("parallel-idastar-walking-distance", 20000, 780,
+				(state, stats) -> PuzzleSolver.solveParallelIterativeDeepening(state, walkingDistance, stats));
+		register("astar-dual-pattern-database", 1100, 55,
+				(state, stats) -> PuzzleSolver.solve(state, dualPatternDatabase, stats));
+		register("idastar-dual-pattern-database", 1700, 70,
+				(state, stats) -> PuzzleSolver.solveIterativeDeepening(state, dualPatternDatabase, stats));
+		/* the portfolio's counts include the engines that lost, which depends on
+		 * how many of them run at once, so its budgets are set from the sum of
+		 * the engines' own budgets instead */
+		register("portfolio", 150000, 5000,
+				(state, stats) -> PuzzleSolver.solvePortfolio(state, stats));
+	}
+
+	private static void register(String name, long nodeBudget, double meanNodeBudget, Mode mode) {
+		register(name, 1, nodeBudget, meanNodeBudget, mode);
+	}
+
+	private static void register(String name, int stride, long nodeBudget, double meanNodeBudget, Mode mode) {
+		MODES.put(name, mode);
+		STRIDES.put(name, stride);
+		NODE_BUDGETS.put(name, nodeBudget);
+		MEAN_NODE_BUDGETS.put(name, meanNodeBudget);
+	}
+
+	public static void main(String[] args) {
+
+		int stride = 0; /* 0 means each mode's own stride */
+		long maxMillisPerState = 2000;
+		long maxTotalSeconds = 600;
+		long maxNodes = -1;
+		List<String> modes = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--stride":
+				stride = Integer.parseInt(args[++i]);
+				break;
+			case "--max-millis-per-state":
+				maxMillisPerState = Long.parseLong(args[++i]);
+				break;
+			case "--max-total-seconds":
+				maxTotalSeconds = Long.parseLong(args[++i]);
+				break;
+			case "--max-nodes":
+				maxNodes = Long.parseLong(args[++i]);
+				break;
+			default:
+				if (!MODES.containsKey(args[i])) {
+					System.err.println("unknown mode " + args[i] + ", expected one of " + MODES.keySet());
+					System.exit(2);
+				}
+				modes.add(args[i]);
+			}
+		}
+		if (modes.isEmpty()) {
+			modes.addAll(MODES.keySet());
+		}
+
+		long start = System.nanoTime();
+		Map<PuzzleState, Integer> reference = distancesToGoal();
+		System.out.println("reference: " + reference.size() + " states (" + (System.nanoTime() - start) / 1000000
+				+ " ms)");
+
+		boolean passed = true;
+		for (String mode : modes) {
+			List<PuzzleState> states = new ArrayList<>();
+			int modeStride = (stride > 0) ? stride : STRIDES.get(mode);
+			int index = 0;
+			for (PuzzleState state : reference.keySet()) {
+				if (index++ % modeStride == 0) {
+					states.add(state);
+				}
+			}
+			long nodeBudget = (maxNodes >= 0) ? maxNodes : NODE_BUDGETS.get(mode);
+			double meanNodeBudget = (maxNodes >= 0) ? maxNodes : MEAN_NODE_BUDGETS.get(mode);
+			passed &= check(mode, MODES.get(mode), states, reference, nodeBudget, meanNodeBudget,
+					maxMillisPerState * 1000000, maxTotalSeconds * 1000000000);
+		}
+
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/* Solves every state with one mode and prints a summary.  Returns true if
+	 * every check passed.
+	 */
+	private static boolean check(String name, Mode mode, List<PuzzleState> states,
+			Map<PuzzleState, Integer> reference, long nodeBudget, double meanNodeBudget,
+			long maxNanosPerState, long maxTotalNanos) {
+
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAccumulator maxNodes = new LongAccumulator(Math::max, 0);
+		AtomicLong totalNodes = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+
+		long start = System.nanoTime();
+		IntStream.range(0, states.size()).parallel().forEach(i -> {
+			PuzzleState state = states.get(i);
+			SearchStatistics stats = new SearchStatistics();
+			long solveStart = System.nanoTime();
+			List<PuzzleState> solution;
+			try {
+				solution = mode.solve(state, stats);
+			} catch (RuntimeException e) {
+				fail(name, state, "threw " + e, failures);
+				return;
+			}
+			long nanos = System.nanoTime() - solveStart;
+
+			latency.record(nanos);
+			maxNodes.accumulate(stats.getNodesExpanded());
+			totalNodes.addAndGet(stats.getNodesExpanded());
+
+			int expected = reference.get(state);
+			if (!isValid(state, solution)) {
+				fail(name, state, "returned an invalid solution", failures);
+			} else if (solution.size() - 1 != expected) {
+				fail(name, state, "returned " + (solution.size() - 1) + " moves, but " + expected
+						+ " is optimal", failures);
+			} else if (stats.getNodesExpanded() > nodeBudget) {
+				fail(name, state, "expanded " + stats.getNodesExpanded() + " nodes, over the budget of "
+						+ nodeBudget, failures);
+			} else if (nanos > maxNanosPerState) {
+				fail(name, state, "took " + nanos / 1000000 + " ms", failures);
+			}
+		});
+		long totalNanos = System.nanoTime() - start;
+
+		double meanNodes = totalNodes.get() / (double) states.size();
+		boolean passed = failures.get() == 0 && totalNanos <= maxTotalNanos && meanNodes <= meanNodeBudget;
+		System.out.printf("%s: %s, %d states, %d failures, %.1f s total (budget %d s), "
+				+ "latency p50=%.3f ms p99=%.3f ms max=%.3f ms, "
+				+ "nodes expanded mean=%.1f (budget %.0f) max=%d (budget %d)%n",
+				name, passed ? "passed" : "FAILED", states.size(), failures.get(), totalNanos / 1e9,
+				maxTotalNanos / 1000000000, latency.getQuantile(0.5) / 1e6, latency.getQuantile(0.99) / 1e6,
+				latency.getMax() / 1e6, meanNodes, meanNodeBudget, maxNodes.get(), nodeBudget);
+		return passed;
+	}
+
+	/* Solves the state with checkpoints, stops the search once it has expanded
+	 * CHECKPOINT_STOP_AFTER nodes, and finishes it with resumeOffHeap().  States
+	 * that are solved before then are solved without being stopped.
+	 */
+	private static List<PuzzleState> checkpointAndResume(PuzzleState state, SearchStatistics stats) {
+		Path file;
+		try {
+			file = Files.createTempFile("regression-suite-", ".checkpoint");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			SearchStatistics first = new SearchStatistics();
+			List<PuzzleState> solution = null;
+			try {
+				solution = PuzzleSolver.solveOffHeapWithCheckpoints(state,
+						new StoppingHeuristic(Heuristic.DEFAULT, CHECKPOINT_STOP_AFTER), file, 0, first);
+			} catch (CancellationException e) {
+				/* stopped, as intended */
+			} finally {
+				/* the pool thread goes on to other states, so never leave it interrupted */
+				Thread.interrupted();
+			}
+			if (solution != null) {
+				stats.add(first);
+				return solution;
+			}
+			if (first.getCheckpointsWritten() == 0) {
+				throw new IllegalStateException("the search was stopped before it wrote a checkpoint",
+						first.getLastCheckpointFailure());
+			}
+			return PuzzleSolver.resumeOffHeap(file, Heuristic.DEFAULT, 0, stats);
+		} finally {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/* Finds every optimal solution of the state, checks that there are as many
+	 * as the breadth-first search counted, and returns the first one.
+	 */
+	private static List<PuzzleState> allOptimalSolutions(PuzzleState state, SearchStatistics stats) {
+		OptimalSolutions solutions = PuzzleSolver.findOptimalSolutions(state, Heuristic.DEFAULT, stats);
+		long expected = SHORTEST_PATHS.get(state);
+		if (solutions.count() != expected) {
+			throw new IllegalStateException("found " + solutions.count() + " optimal solutions, but there are "
+					+ expected);
+		}
+		return solutions.stream().findFirst().get();
+	}
+
+	/* A heuristic that interrupts the search using it once it has been asked
+	 * for the children of a given number of nodes.  Its name is the name of the
+	 * heuristic it wraps, so a checkpoint made with it can be resumed with that
+	 * heuristic.
+	 */
+	private static class StoppingHeuristic implements Heuristic {
+
+		private final Heuristic heuristic;
+		private int remaining;
+
+		StoppingHeuristic(Heuristic heuristic, int expansions) {
+			this.heuristic = heuristic;
+			this.remaining = expansions;
+		}
+
+		@Override
+		public int h(PuzzleState state) {
+			return heuristic.h(state);
+		}
+
+		@Override
+		public void evaluateAll(long[] boards, int count, int[] out) {
+			if (--remaining == 0) {
+				Thread.currentThread().interrupt();
+			}
+			heuristic.evaluateAll(boards, count, out);
+		}
+
+		@Override
+		public String toString() {
+			return heuristic.toString();
+		}
+	}
+
+	/* Prints the first few failures of a mode, and counts all of them. */
+	private static void fail(String mode, PuzzleState state, String message, AtomicLong failures) {
+		if (failures.incrementAndGet() <= 10) {
+			synchronized (System.out) {
+				System.out.println(mode + " " + message + " for\n" + state);
+			}
+		}
+	}
+
+	/* Returns true if the solution starts at the given state, ends at the
+	 * solved state, and only makes legal moves.
+	 */
+	private static boolean isValid(PuzzleState state, List<PuzzleState> solution) {
+		if (solution.isEmpty() || !solution.get(0).equals(state)
+				|| !solution.get(solution.size() - 1).equals(PuzzleState.GOAL_STATE)) {
+			return false;
+		}
+		for (int i = 1; i < solution.size(); i++) {
+			if (solution.get(i - 1).operationTo(solution.get(i)) == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Returns the true number of moves needed to solve every solvable state,
+	 * found with a breadth-first search from the solved state.  (Since every
+	 * move can be undone, the distance to the solved state is the same as the
+	 * distance from it.)  Also fills in SHORTEST_PATHS: a state's count is the
+	 * sum of the counts of its neighbors one move closer, which are all final
+	 * by the time it is taken off the queue.
+	 */
+	private static Map<PuzzleState, Integer> distancesToGoal() {
+		Map<PuzzleState, Integer> distances = new LinkedHashMap<>();
+		ArrayDeque<PuzzleState> queue = new ArrayDeque<>();
+		distances.put(PuzzleState.GOAL_STATE, 0);
+		SHORTEST_PATHS.put(PuzzleState.GOAL_STATE, 1L);
+		queue.add(PuzzleState.GOAL_STATE);
+		while (!queue.isEmpty()) {
+			PuzzleState state = queue.remove();
+			int distance = distances.get(state);
+			long paths = SHORTEST_PATHS.get(state);
+			for (PuzzleState neighbor : state.neighbors()) {
+				Integer neighborDistance = distances.get(neighbor);
+				if (neighborDistance == null) {
+					distances.put(neighbor, distance + 1);
+					SHORTEST_PATHS.put(neighbor, paths);
+					queue.add(neighbor);
+				} else if (neighborDistance == distance + 1) {
+					SHORTEST_PATHS.put(neighbor, SHORTEST_PATHS.get(neighbor) + paths);
+				}
+			}
+		}
+		return distances;
+	}
+
+}
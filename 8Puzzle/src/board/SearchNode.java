@@ -0,0 +1,136 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/* A node in a single search: a PuzzleState along with how the search reached
+ * it.  The g-value is the number of moves made to reach the state, the f-value
+ * is the g-value plus the heuristic value, and the parent is the node that this
+ * one was generated from.  Nodes belong to the search that created them and are
+ * never shared, while the PuzzleStates inside them can be.
+ */
+public class SearchNode implements Comparable<SearchNode> {
+
+	private final PuzzleState state;
+	private final SearchNode parent; /* null for the node the search started from */
+	private final int parentOperation; // -1 for the node the search started from
+	private final int gVal;
+	private final int fVal;
+
+	/* Creates the node a search starts from. */
+	public SearchNode(PuzzleState state, int h) {
+		this(state, null, -1, h);
+	}
+
+	/* Creates a node for the state reached by applying parentOperation to the
+	 * parent's state.  The h-value is passed in so that a solver can compute the
+	 * h-values of many states at once.
+	 */
+	public SearchNode(PuzzleState state, SearchNode parent, int parentOperation, int h) {
+		this.state = state;
+		this.parent = parent;
+		this.parentOperation = parentOperation;
+		this.gVal = (parent == null) ? 0 : parent.gVal + 1;
+		this.fVal = gVal + h;
+	}
+
+	/* getters */
+
+	public PuzzleState getState() {
+		return state;
+	}
+
+	public SearchNode getParent() {
+		return parent;
+	}
+
+	public int getParentOperation() {
+		return parentOperation;
+	}
+
+	/* returns the g-value (the number of steps that have been
+	 * taken to reach this node).
+	 */
+	public int g() {
+		return gVal;
+	}
+
+	/* returns the f-value, the sum of the g-value and the h-value */
+	public int f() {
+		return fVal;
+	}
+
+	public int h() {
+		return fVal - gVal;
+	}
+
+	/* Returns the operations that can be performed on this node's state, except
+	 * for the "inverse" operation, meaning the one that would lead straight back
+	 * to the parent.  It is pointless for a search to look at the parent again.
+	 */
+	public ArrayList<Integer> getPossibleOperationsExcludeInverse() {
+
+		ArrayList<Integer> possibleOperations = state.getPossibleOperations();
+
+		if (parentOperation == -1) { // the node has no parent
+			return possibleOperations; // no operation to remove
+		}
+
+		/* otherwise, remove the inverse of the parent operation.  Integer.valueOf() is necessary
+		 * since it would otherwise attempt to remove the index given by the argument */
+		possibleOperations.remove(Integer.valueOf(BoardOperations.inverseOperation(parentOperation)));
+
+		return possibleOperations;
+	}
+
+	/* Returns the nodes for all states reachable from this one with a single
+	 * move, other than the parent's state.  The h-values of all of the children
+	 * are computed together with Heuristic.evaluateAll().
+	 */
+	public ArrayList<SearchNode> children(Heuristic heuristic) {
+		ArrayList<Integer> operations = getPossibleOperationsExcludeInverse();
+		int count = operations.size();
+		PuzzleState[] states = new PuzzleState[count];
+		long[] boards = new long[count];
+		for (int i = 0; i < count; i++) {
+			states[i] = state.getNewState(operations.get(i));
+			boards[i] = states[i].getPacked();
+		}
+		int[] h = new int[count];
+		heuristic.evaluateAll(boards, count, h);
+
+		ArrayList<SearchNode> children = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			children.add(new SearchNode(states[i], this, operations.get(i), h[i]));
+		}
+		return children;
+	}
+
+	/* Returns the states from the start of the search to this node, in order. */
+	public List<PuzzleState> path() {
+		LinkedList<PuzzleState> path = new LinkedList<>();
+		for (SearchNode curr = this; curr != null; curr = curr.parent) {
+			path.addFirst(curr.state);
+		}
+		return path;
+	}
+
+	/* Nodes are ordered by how "promising" they are: a lower f-value comes first.
+	 * Among nodes with the same f-value, the one with the higher g-value comes
+	 * first, since it is likely to be closer to the solved state.
+	 */
+	@Override
+	public int compareTo(SearchNode other) {
+		if (fVal != other.fVal) {
+			return Integer.compare(fVal, other.fVal);
+		}
+		return Integer.compare(other.gVal, gVal);
+	}
+
+	@Override
+	public String toString() {
+		return state + "\ng=" + gVal + ", f=" + fVal;
+	}
+
+}
@@ -0,0 +1,95 @@
+package board;
+
+/* Counters describing the work done by a single call to one of the
+ * PuzzleSolver methods.  A SearchStatistics object can be passed to the
+ * solver to find out how many nodes were expanded and generated, which is
+ * how different heuristics are compared against each other.
+ */
+public class SearchStatistics {
+
+	private long nodesExpanded;
+	private long nodesGenerated;
+	private long checkpointsWritten;
+	private long checkpointFailures;
+	private Throwable lastCheckpointFailure;
+
+	/* getters */
+
+	public long getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	public long getNodesGenerated() {
+		return nodesGenerated;
+	}
+
+	/* the number of checkpoints a search with a checkpoint file wrote */
+	public long getCheckpointsWritten() {
+		return checkpointsWritten;
+	}
+
+	/* the number of checkpoints a search with a checkpoint file failed to write */
+	public long getCheckpointFailures() {
+		return checkpointFailures;
+	}
+
+	/* Returns what went wrong with the last checkpoint that could not be
+	 * written, or null if every checkpoint was written.
+	 */
+	public Throwable getLastCheckpointFailure() {
+		return lastCheckpointFailure;
+	}
+
+	/* Called by the solver each time a PuzzleState is taken off the open
+	 * list and its children are generated.
+	 */
+	void nodeExpanded() {
+		nodesExpanded++;
+	}
+
+	/* Called by the solver for every child PuzzleState that it creates. */
+	void nodesGenerated(int count) {
+		nodesGenerated += count;
+	}
+
+	/* Called by the solver when a checkpoint has been written. */
+	void checkpointWritten() {
+		checkpointsWritten++;
+	}
+
+	/* Called by the solver when a checkpoint could not be written.  The search
+	 * carries on and tries again at the next checkpoint.
+	 */
+	void checkpointFailed(Throwable cause) {
+		checkpointFailures++;
+		lastCheckpointFailure = cause;
+	}
+
+	/* Adds the counts of another SearchStatistics object to this one, for
+	 * searches made up of several smaller searches.
+	 */
+	void add(SearchStatistics other) {
+		add(other.nodesExpanded, other.nodesGenerated);
+		checkpointsWritten += other.checkpointsWritten;
+		checkpointFailures += other.checkpointFailures;
+		if (other.lastCheckpointFailure != null) {
+			lastCheckpointFailure = other.lastCheckpointFailure;
+		}
+	}
+
+	/* Adds counts saved from an earlier run, such as a resumed checkpoint. */
+	void add(long expanded, long generated) {
+		nodesExpanded += expanded;
+		nodesGenerated += generated;
+	}
+
+	@Override
+	public String toString() {
+		String counts = "expanded=" + nodesExpanded + ", generated=" + nodesGenerated;
+		if (checkpointsWritten == 0 && checkpointFailures == 0) {
+			return counts;
+		}
+		return counts + ", checkpoints=" + checkpointsWritten + ", failedCheckpoints=" + checkpointFailures;
+	}
+
+}
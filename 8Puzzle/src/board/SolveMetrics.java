@@ -0,0 +1,143 @@
+package board;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Totals across every call to the PuzzleSolver methods, as opposed to the
+ * SearchStatistics of a single call.  Each solve is recorded under its solver
+ * mode ("astar", "off-heap", and so on) and the length of the solution it
+ * found, with a LatencyHistogram of how long it took, the number of solves,
+ * and the number of nodes expanded.  Recording never locks, so it adds almost
+ * nothing to the cost of a solve even when many threads are solving at once.
+ *
+ * The totals can be written out in the Prometheus text format with
+ * writePrometheus(), either to a file with writeTo() or from the /metrics
+ * endpoint of the solve server.
+ */
+public class SolveMetrics {
+
+	/* The registry that PuzzleSolver records every solve in. */
+	public static final SolveMetrics GLOBAL = new SolveMetrics();
+
+	private final long startNanos = System.nanoTime();
+
+	/* the series for each mode, keyed by solution length */
+	private final ConcurrentMap<String, ConcurrentMap<Integer, Series>> modes = new ConcurrentHashMap<>();
+
+	/* Records one finished solve. */
+	public void record(String mode, int depth, long nanos, long nodesExpanded) {
+		Series series = modes.computeIfAbsent(mode, m -> new ConcurrentHashMap<>())
+				.computeIfAbsent(depth, d -> new Series());
+		series.latency.record(nanos);
+		series.nodesExpanded.add(nodesExpanded);
+	}
+
+	/* Returns the latencies, in nanoseconds, of the solves recorded under the
+	 * given mode and solution length, or null if there have not been any.
+	 */
+	public LatencyHistogram getLatency(String mode, int depth) {
+		Map<Integer, Series> depths = modes.get(mode);
+		Series series = (depths == null) ? null : depths.get(depth);
+		return (series == null) ? null : series.latency;
+	}
+
+	/* Writes every total in the Prometheus text exposition format.  Latencies
+	 * are written as summaries with the 50th, 99th, and 99.9th percentiles, and
+	 * the solves and expansions per second are averages since the registry was
+	 * created.
+	 */
+	public void writePrometheus(Appendable out) throws IOException {
+
+		/* copy into sorted maps so the output is in a stable order */
+		Map<String, Map<Integer, Series>> sorted = new TreeMap<>();
+		for (Map.Entry<String, ConcurrentMap<Integer, Series>> entry : modes.entrySet()) {
+			sorted.put(entry.getKey(), new TreeMap<>(entry.getValue()));
+		}
+		double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+
+		out.append("# HELP puzzle_solve_latency_seconds Time taken by each solve.\n");
+		out.append("# TYPE puzzle_solve_latency_seconds summary\n");
+		for (Map.Entry<String, Map<Integer, Series>> mode : sorted.entrySet()) {
+			for (Map.Entry<Integer, Series> depth : mode.getValue().entrySet()) {
+				String labels = labels(mode.getKey(), depth.getKey());
+				LatencyHistogram latency = depth.getValue().latency;
+				for (String quantile : new String[] { "0.5", "0.99", "0.999" }) {
+					out.append("puzzle_solve_latency_seconds{").append(labels)
+							.append(",quantile=\"").append(quantile).append("\"} ")
+							.append(seconds(latency.getQuantile(Double.parseDouble(quantile)))).append('\n');
+				}
+				out.append("puzzle_solve_latency_seconds_sum{").append(labels).append("} ")
+						.append(seconds(latency.getSum())).append('\n');
+				out.append("puzzle_solve_latency_seconds_count{").append(labels).append("} ")
+						.append(Long.toString(latency.getCount())).append('\n');
+			}
+		}
+
+		out.append("# HELP puzzle_nodes_expanded_total Nodes expanded by all solves.\n");
+		out.append("# TYPE puzzle_nodes_expanded_total counter\n");
+		for (Map.Entry<String, Map<Integer, Series>> mode : sorted.entrySet()) {
+			for (Map.Entry<Integer, Series> depth : mode.getValue().entrySet()) {
+				out.append("puzzle_nodes_expanded_total{").append(labels(mode.getKey(), depth.getKey())).append("} ")
+						.append(Long.toString(depth.getValue().nodesExpanded.sum())).append('\n');
+			}
+		}
+
+		out.append("# HELP puzzle_solves_per_second Average solves per second since startup.\n");
+		out.append("# TYPE puzzle_solves_per_second gauge\n");
+		for (Map.Entry<String, Map<Integer, Series>> mode : sorted.entrySet()) {
+			long solves = 0;
+			for (Series series : mode.getValue().values()) {
+				solves += series.latency.getCount();
+			}
+			out.append("puzzle_solves_per_second{mode=\"").append(mode.getKey()).append("\"} ")
+					.append(Double.toString(solves / seconds)).append('\n');
+		}
+
+		out.append("# HELP puzzle_expansions_per_second Average node expansions per second since startup.\n");
+		out.append("# TYPE puzzle_expansions_per_second gauge\n");
+		for (Map.Entry<String, Map<Integer, Series>> mode : sorted.entrySet()) {
+			long expanded = 0;
+			for (Series series : mode.getValue().values()) {
+				expanded += series.nodesExpanded.sum();
+			}
+			out.append("puzzle_expansions_per_second{mode=\"").append(mode.getKey()).append("\"} ")
+					.append(Double.toString(expanded / seconds)).append('\n');
+		}
+	}
+
+	/* Writes the Prometheus text format to the given file.  The file is replaced
+	 * in one step, so a collector reading it never sees half of it.
+	 */
+	public void writeTo(Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+			writePrometheus(out);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String labels(String mode, int depth) {
+		return "mode=\"" + mode + "\",depth=\"" + depth + "\"";
+	}
+
+	private static String seconds(long nanos) {
+		return Double.toString(nanos / 1e9);
+	}
+
+	/* the totals for one mode and solution length */
+	private static class Series {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder nodesExpanded = new LongAdder();
+	}
+
+}
@@ -0,0 +1,210 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* A reusable A* solver.  PuzzleSolver.solve() builds a new open list, hash
+ * table, and a SearchNode and PuzzleState for every node on every call, so
+ * each solve starts with empty, small structures and leaves all of them
+ * behind for the garbage collector.  A Solver instead keeps the same
+ * structures as OffHeapSearch, but in plain arrays on the heap, and keeps them
+ * from one solve to the next:
+ *
+ *   nodes   parallel arrays of the board, the index of the parent node, and
+ *           the g-value and position of the blank of every node.
+ *   open    the open list heap of PackedBoards.
+ *   bestG   the bestG table of PackedBoards, tagged with the number of the
+ *           solve that wrote each entry.
+ *
+ * Starting a new solve only sets the sizes of the node array and heap back to
+ * 0 and moves on to the next solve number, which makes every entry left in
+ * the table look empty without touching it.  The arrays only grow when a
+ * solve needs more room than any before it, so once a Solver has seen a few
+ * hard boards, a solve allocates nothing but the solution it returns.
+ *
+ * A Solver must only be used by one thread at a time.  forCurrentThread()
+ * returns one that belongs to the calling thread, which is the easy way to
+ * share them in a thread pool.
+ */
+public class Solver {
+
+	private static final int INITIAL_NODES = 1 << 10;
+	private static final int INITIAL_TABLE = 1 << 11;
+
+	private static final ThreadLocal<Solver> PER_THREAD = ThreadLocal.withInitial(Solver::new);
+
+	/* nodes */
+	private long[] nodeBoards = new long[INITIAL_NODES];
+	private int[] nodeParents = new int[INITIAL_NODES];
+	private short[] nodeInfo = new short[INITIAL_NODES]; /* g-value << 4 | blank position */
+	private int numNodes;
+
+	/* open list */
+	private final HeapLongArray heap = new HeapLongArray(INITIAL_NODES);
+	private int heapSize;
+
+	/* table of best g-values; capacity is always a power of 2 */
+	private HeapLongArray table = new HeapLongArray(INITIAL_TABLE);
+	private int tableSize;
+	private long epoch = 0;
+
+	/* scratch space for the children of a node */
+	private final long[] childBoards = new long[4];
+	private final int[] childBlanks = new int[4];
+	private final int[] childH = new int[4];
+
+	/* Returns the Solver that belongs to the calling thread, creating it the
+	 * first time a thread asks.
+	 */
+	public static Solver forCurrentThread() {
+		return PER_THREAD.get();
+	}
+
+	/* Returns an optimal solution to the given PuzzleState, in the same form as
+	 * PuzzleSolver.solve(), using the given heuristic.  An
+	 * IllegalArgumentException is thrown if the puzzle cannot be solved.
+	 */
+	public List<PuzzleState> solve(PuzzleState initialState, Heuristic heuristic, SearchStatistics stats) {
+		if (!initialState.isSolvable()) {
+			throw new IllegalArgumentException(initialState + "\ncannot be solved");
+		}
+		reset();
+
+		final long goal = PuzzleState.GOAL_STATE.getPacked();
+		long start = initialState.getPacked();
+		int root = addNode(start, -1, 0, initialState.getBlankPosition());
+		offer(start, 0);
+		push(PackedBoards.entry(heuristic.h(initialState), 0, root));
+
+		while (heapSize > 0) {
+
+			int node = PackedBoards.entryNode(pop());
+			long board = nodeBoards[node];
+			int g = nodeInfo[node] >>> 4;
+
+			/* skip nodes for boards that were reached again with a lower g-value */
+			if (g > bestG(board)) {
+				continue;
+			}
+			if (board == goal) {
+				return path(node, g);
+			}
+			PuzzleSolver.checkCancelled();
+
+			/* generate every child except the parent's board */
+			int parent = nodeParents[node];
+			long parentBoard = (parent == -1) ? 0 : nodeBoards[parent];
+			int count = PackedBoards.children(board, nodeInfo[node] & 0xF, parentBoard, childBoards, childBlanks);
+			stats.nodeExpanded();
+			stats.nodesGenerated(count);
+
+			heuristic.evaluateAll(childBoards, count, childH);
+			int childG = g + 1;
+			if (childG > PackedBoards.MAX_G) {
+				throw new IllegalStateException("the search went deeper than " + PackedBoards.MAX_G + " moves");
+			}
+			for (int i = 0; i < count; i++) {
+				if (offer(childBoards[i], childG)) {
+					int childNode = addNode(childBoards[i], node, childG, childBlanks[i]);
+					push(PackedBoards.entry(childG + childH[i], childG, childNode));
+				}
+			}
+		}
+
+		throw new IllegalArgumentException(initialState + "\ncannot be solved");
+	}
+
+	/* Empties every structure for the next solve without giving up any memory. */
+	private void reset() {
+		numNodes = 0;
+		heapSize = 0;
+		tableSize = 0;
+		if (epoch == PackedBoards.MAX_TAG) {
+			/* the solve numbers have run out, so clear the table for real and start over */
+			table.clear();
+			epoch = 0;
+		}
+		epoch++;
+	}
+
+	private List<PuzzleState> path(int node, int g) {
+		PuzzleState[] states = new PuzzleState[g + 1];
+		for (int curr = node, i = g; curr != -1; curr = nodeParents[curr], i--) {
+			states[i] = PuzzleState.fromPacked(nodeBoards[curr]);
+		}
+		return new ArrayList<>(Arrays.asList(states));
+	}
+
+	/* nodes */
+
+	private int addNode(long board, int parent, int g, int blank) {
+		if (numNodes == nodeBoards.length) {
+			int capacity = nodeBoards.length * 2;
+			nodeBoards = Arrays.copyOf(nodeBoards, capacity);
+			nodeParents = Arrays.copyOf(nodeParents, capacity);
+			nodeInfo = Arrays.copyOf(nodeInfo, capacity);
+		}
+		nodeBoards[numNodes] = board;
+		nodeParents[numNodes] = parent;
+		nodeInfo[numNodes] = (short) ((g << 4) | blank);
+		return numNodes++;
+	}
+
+	/* open list */
+
+	private void push(long value) {
+		heap.ensureCapacity(heapSize + 1);
+		PackedBoards.push(heap, heapSize++, value);
+	}
+
+	private long pop() {
+		return PackedBoards.pop(heap, heapSize--);
+	}
+
+	/* table of best g-values */
+
+	/* Returns the lowest g-value the board has been reached with in this solve,
+	 * or Integer.MAX_VALUE if it has not been reached.
+	 */
+	private int bestG(long board) {
+		long value = table.get(PackedBoards.probe(table, table.capacity(), board, epoch));
+		return PackedBoards.isEmpty(value, epoch) ? Integer.MAX_VALUE : PackedBoards.tableG(value);
+	}
+
+	/* Records that the board was reached with the given g-value.  Returns false
+	 * (and changes nothing) if it was already reached with a g-value that is no
+	 * higher.
+	 */
+	private boolean offer(long board, int g) {
+		long slot = PackedBoards.probe(table, table.capacity(), board, epoch);
+		long value = table.get(slot);
+		if (!PackedBoards.isEmpty(value, epoch)) {
+			if (PackedBoards.tableG(value) <= g) {
+				return false;
+			}
+			table.set(slot, PackedBoards.tableEntry(board, g, epoch));
+			return true;
+		}
+		table.set(slot, PackedBoards.tableEntry(board, g, epoch));
+		tableSize++;
+		if (2L * tableSize > table.capacity()) {
+			grow();
+		}
+		return true;
+	}
+
+	/* Doubles the table, keeping only the entries of this solve. */
+	private void grow() {
+		HeapLongArray bigger = new HeapLongArray((int) table.capacity() * 2);
+		for (long slot = 0; slot < table.capacity(); slot++) {
+			long value = table.get(slot);
+			if (!PackedBoards.isEmpty(value, epoch)) {
+				long board = value & PackedBoards.BOARD_MASK;
+				bigger.set(PackedBoards.probe(bigger, bigger.capacity(), board, epoch), value);
+			}
+		}
+		table = bigger;
+	}
+
+}
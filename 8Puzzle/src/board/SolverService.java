@@ -0,0 +1,263 @@
+package board;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/* Solves boards in the background and hands back the solutions as
+ * CompletableFutures, so that a program embedding the solver never has to
+ * block a thread of its own while a search runs.
+ *
+ * Work waits in one of two lanes.  Whenever a solver thread becomes free it
+ * takes the oldest board in the INTERACTIVE lane, and only takes one from the
+ * BATCH lane if the interactive lane is empty, so a large batch never makes a
+ * person waiting on a single board wait behind it.  Each lane holds at most
+ * queueCapacity boards, and submitting more than that throws a
+ * RejectedExecutionException instead of queueing without limit.
+ *
+ * If a board is submitted while a search for it is already waiting or
+ * running, no new search is started: the caller gets the result of the one
+ * that is already there (moved to the interactive lane if it was waiting in
+ * the batch lane and the new caller is interactive).  Every caller gets a
+ * future of its own, so cancelling one does not affect the others, and a
+ * waiting search is dropped once every caller has cancelled.  A search that
+ * has already started runs to the end.
+ */
+public class SolverService implements AutoCloseable {
+
+	/* The lanes work can be submitted to. */
+	public enum Priority {
+		INTERACTIVE, BATCH
+	}
+
+	/* A board that is waiting to be solved or being solved, along with every
+	 * caller waiting on it.
+	 */
+	private static class Job {
+		final PuzzleState state;
+		final List<CompletableFuture<List<PuzzleState>>> callers = new ArrayList<>();
+		Priority priority;
+		boolean started = false;
+
+		Job(PuzzleState state, Priority priority) {
+			this.state = state;
+			this.priority = priority;
+		}
+	}
+
+	private final Executor executor;
+	private final ExecutorService ownedExecutor; /* null if the executor was given to the constructor */
+	private final Heuristic heuristic;
+	private final int queueCapacity;
+
+	/* everything below is guarded by lock */
+	private final Object lock = new Object();
+	private final ArrayDeque<Job> interactive = new ArrayDeque<>();
+	private final ArrayDeque<Job> batch = new ArrayDeque<>();
+	private final Map<PuzzleState, Job> inFlight = new HashMap<>();
+	private boolean closed = false;
+
+	/* Creates a service with its own pool of the given number of daemon threads,
+	 * which solves with the default heuristic.  close() shuts the pool down.
+	 */
+	public SolverService(int threads, int queueCapacity) {
+		this(Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "solver-service");
+			thread.setDaemon(true);
+			return thread;
+		}), queueCapacity, Heuristic.DEFAULT, true);
+	}
+
+	/* Creates a service that runs its searches on the given executor with the
+	 * given heuristic.  The executor stays the caller's to shut down.
+	 */
+	public SolverService(Executor executor, int queueCapacity, Heuristic heuristic) {
+		this(executor, queueCapacity, heuristic, false);
+	}
+
+	private SolverService(Executor executor, int queueCapacity, Heuristic heuristic, boolean owned) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("the queue capacity must be at least 1");
+		}
+		this.executor = executor;
+		this.ownedExecutor = owned ? (ExecutorService) executor : null;
+		this.heuristic = heuristic;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/* Returns a future that completes with an optimal solution of the given
+	 * board, in the same form as PuzzleSolver.solve(), or completes
+	 * exceptionally with whatever the search threw (an IllegalArgumentException
+	 * if the board cannot be solved).  A RejectedExecutionException is thrown
+	 * if a new search is needed but its lane is full, or the service is closed.
+	 */
+	public CompletableFuture<List<PuzzleState>> solve(PuzzleState state, Priority priority) {
+		CompletableFuture<List<PuzzleState>> caller = new CompletableFuture<>();
+		Job job;
+		boolean created = false;
+		synchronized (lock) {
+			if (closed) {
+				throw new RejectedExecutionException("the solver service has been closed");
+			}
+			job = inFlight.get(state);
+			if (job == null) {
+				if (lane(priority).size() >= queueCapacity) {
+					throw new RejectedExecutionException("the " + priority + " lane is full");
+				}
+				job = new Job(state, priority);
+				lane(priority).add(job);
+				inFlight.put(state, job);
+				created = true;
+			} else if (!job.started && priority == Priority.INTERACTIVE && job.priority == Priority.BATCH) {
+				batch.remove(job);
+				interactive.add(job);
+				job.priority = Priority.INTERACTIVE;
+			}
+			job.callers.add(caller);
+		}
+
+		/* outside the lock, since an executor may run the task right here */
+		if (created) {
+			try {
+				executor.execute(this::runNext);
+			} catch (RejectedExecutionException e) {
+				/* unless a runner that is already going has taken the job, drop it */
+				boolean dropped;
+				synchronized (lock) {
+					dropped = !job.started && lane(job.priority).remove(job);
+					if (dropped) {
+						inFlight.remove(state, job);
+					}
+				}
+				if (dropped) {
+					for (CompletableFuture<List<PuzzleState>> other : callers(job)) {
+						other.completeExceptionally(e);
+					}
+					throw e;
+				}
+			}
+		}
+
+		final Job joined = job;
+		caller.whenComplete((solution, error) -> {
+			if (caller.isCancelled()) {
+				cancelled(joined, caller);
+			}
+		});
+		return caller;
+	}
+
+	/* Same as solve(state, Priority.INTERACTIVE). */
+	public CompletableFuture<List<PuzzleState>> solve(PuzzleState state) {
+		return solve(state, Priority.INTERACTIVE);
+	}
+
+	/* Returns the number of boards waiting in the given lane. */
+	public int getQueued(Priority priority) {
+		synchronized (lock) {
+			return lane(priority).size();
+		}
+	}
+
+	/* Stops accepting boards and cancels the ones that are still waiting.
+	 * Searches that have started are left to finish, and if the service made
+	 * its own pool, the pool is shut down once they have.
+	 */
+	@Override
+	public void close() {
+		List<Job> dropped = new ArrayList<>();
+		synchronized (lock) {
+			closed = true;
+			dropped.addAll(interactive);
+			dropped.addAll(batch);
+			interactive.clear();
+			batch.clear();
+			for (Job job : dropped) {
+				inFlight.remove(job.state);
+			}
+		}
+		for (Job job : dropped) {
+			for (CompletableFuture<List<PuzzleState>> caller : callers(job)) {
+				caller.cancel(false);
+			}
+		}
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	/* Run on the executor once for every job submitted.  Takes jobs in lane
+	 * order until both lanes are empty, so the jobs it takes are not
+	 * necessarily the one it was submitted for, and a job can never be left
+	 * waiting without a runner that will get to it.
+	 */
+	private void runNext() {
+		while (true) {
+			Job job;
+			synchronized (lock) {
+				job = interactive.poll();
+				if (job == null) {
+					job = batch.poll();
+				}
+				if (job == null) {
+					return;
+				}
+				job.started = true;
+			}
+			run(job);
+		}
+	}
+
+	private void run(Job job) {
+		List<PuzzleState> solution = null;
+		Throwable error = null;
+		try {
+			/* each pool thread reuses its own Solver, so steady solving barely allocates */
+			solution = PuzzleSolver.solveReusing(job.state, heuristic, new SearchStatistics());
+		} catch (RuntimeException | Error e) {
+			error = e;
+		} finally {
+			synchronized (lock) {
+				inFlight.remove(job.state);
+			}
+		}
+
+		for (CompletableFuture<List<PuzzleState>> caller : callers(job)) {
+			if (error == null) {
+				caller.complete(solution);
+			} else {
+				caller.completeExceptionally(error);
+			}
+		}
+	}
+
+	/* Forgets a caller that cancelled its future, and drops the job if it has
+	 * not started and nobody else is waiting on it.
+	 */
+	private void cancelled(Job job, CompletableFuture<List<PuzzleState>> caller) {
+		synchronized (lock) {
+			job.callers.remove(caller);
+			if (job.callers.isEmpty() && !job.started && lane(job.priority).remove(job)) {
+				inFlight.remove(job.state);
+			}
+		}
+	}
+
+	private List<CompletableFuture<List<PuzzleState>>> callers(Job job) {
+		synchronized (lock) {
+			return new ArrayList<>(job.callers);
+		}
+	}
+
+	private ArrayDeque<Job> lane(Priority priority) {
+		return (priority == Priority.INTERACTIVE) ? interactive : batch;
+	}
+
+}
@@ -0,0 +1,138 @@
+package board;
+
+import java.util.Arrays;
+
+/* The Walking Distance heuristic.  Instead of looking at each tile on its own
+ * like the Manhattan Distance does, Walking Distance only looks at how many
+ * tiles of each "goal row" are currently sitting in each row, and which row
+ * the blank is in.  Since every move slides exactly one tile between two
+ * neighboring rows (or two neighboring columns), the number of vertical moves
+ * needed to sort the rows plus the number of horizontal moves needed to sort
+ * the columns never overestimates the real number of moves, and it accounts
+ * for tiles getting in each other's way.
+ *
+ * There are only a few hundred distinct row configurations, so the distance
+ * of each one from the solved configuration is computed once with a
+ * breadth-first search and stored in a table.  Evaluating the heuristic is
+ * then just two table lookups.  Columns use the same table because the
+ * column configuration of the solved puzzle looks exactly like its row
+ * configuration.
+ */
+public class WalkingDistanceHeuristic implements Heuristic {
+
+	/* A configuration is encoded as 9 two-bit counters (how many tiles that
+	 * belong in row "group" are in row "row", at bits 2 * (3 * row + group))
+	 * followed by 2 bits for the row of the blank.
+	 */
+	private static final int BLANK_SHIFT = 18;
+	private static final byte[] DISTANCES;
+
+	/* ROW_CONFIG[16 * position + tile] is what the tile adds to the row
+	 * configuration when it is at the given position, and COL_CONFIG is the same
+	 * for the column configuration.  The configuration of a board is the sum of
+	 * the entries for all of its tiles.
+	 */
+	private static final int[] ROW_CONFIG = new int[16 * 9];
+	private static final int[] COL_CONFIG = new int[16 * 9];
+
+	/* static initializer that fills in the table with a breadth-first search
+	 * starting at the solved configuration.
+	 */
+	static {
+		for (int position = 0; position < 9; position++) {
+			int row = position / 3;
+			int col = position % 3;
+			ROW_CONFIG[16 * position] = row << BLANK_SHIFT;
+			COL_CONFIG[16 * position] = col << BLANK_SHIFT;
+			for (int tile = 1; tile < 9; tile++) {
+				ROW_CONFIG[16 * position + tile] = 1 << (2 * (3 * row + (tile - 1) / 3));
+				COL_CONFIG[16 * position + tile] = 1 << (2 * (3 * col + (tile - 1) % 3));
+			}
+		}
+
+		DISTANCES = new byte[1 << (BLANK_SHIFT + 2)];
+		Arrays.fill(DISTANCES, (byte) -1);
+
+		int goal = 0;
+		for (int row = 0; row < 3; row++) {
+			goal += ((row == 2) ? 2 : 3) << (2 * (3 * row + row));
+		}
+		goal |= 2 << BLANK_SHIFT;
+
+		int[] queue = new int[1024];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = goal;
+		DISTANCES[goal] = 0;
+
+		while (head < tail) {
+			int config = queue[head++];
+			int blankRow = config >>> BLANK_SHIFT;
+			int counts = config & ((1 << BLANK_SHIFT) - 1);
+			byte distance = DISTANCES[config];
+
+			/* the blank can swap with a tile from the row above or below it */
+			for (int otherRow = blankRow - 1; otherRow <= blankRow + 1; otherRow += 2) {
+				if (otherRow < 0 || otherRow > 2) {
+					continue;
+				}
+				for (int group = 0; group < 3; group++) {
+					int from = 2 * (3 * otherRow + group);
+					if (((counts >>> from) & 3) == 0) {
+						continue;
+					}
+					int to = 2 * (3 * blankRow + group);
+					int next = (counts - (1 << from) + (1 << to)) | (otherRow << BLANK_SHIFT);
+					if (DISTANCES[next] != -1) {
+						continue;
+					}
+					DISTANCES[next] = (byte) (distance + 1);
+					if (tail == queue.length) {
+						queue = Arrays.copyOf(queue, queue.length * 2);
+					}
+					queue[tail++] = next;
+				}
+			}
+		}
+	}
+
+	@Override
+	public int h(PuzzleState state) {
+		long tiles = state.getPacked();
+		int rowConfig = 0;
+		int colConfig = 0;
+		for (int position = 0; position < 9; position++) {
+			int index = 16 * position + (int) ((tiles >>> (4 * position)) & 0xF);
+			rowConfig += ROW_CONFIG[index];
+			colConfig += COL_CONFIG[index];
+		}
+		return DISTANCES[rowConfig] + DISTANCES[colConfig];
+	}
+
+	/* Builds the row and column configurations of all of the boards at once, one
+	 * grid location at a time, and then looks them all up.
+	 */
+	@Override
+	public void evaluateAll(long[] boards, int count, int[] out) {
+		int[] rowConfigs = new int[count];
+		int[] colConfigs = new int[count];
+		for (int position = 0; position < 9; position++) {
+			int shift = 4 * position;
+			int base = 16 * position;
+			for (int b = 0; b < count; b++) {
+				int index = base + (int) ((boards[b] >>> shift) & 0xF);
+				rowConfigs[b] += ROW_CONFIG[index];
+				colConfigs[b] += COL_CONFIG[index];
+			}
+		}
+		for (int b = 0; b < count; b++) {
+			out[b] = DISTANCES[rowConfigs[b]] + DISTANCES[colConfigs[b]];
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "walking-distance";
+	}
+
+}
@@ -15,11 +15,20 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JButton;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 import board.BoardOperations;
+import board.Heuristic;
+import board.HintEngine;
 import board.PuzzleSolver;
 import board.PuzzleState;
 
@@ -41,9 +50,26 @@ public class MainPanel extends JPanel {
 			TILE_BORDER_COLOR = Color.BLACK, NUMBER_COLOR = Color.BLACK, 
 			GRID_BACKGROUND_COLOR = new Color(235, 235, 235);
 	
+	/* how long the hint engine may search for a better plan after each move */
+	private static final long HINT_BUDGET_MILLIS = 50;
+	
 	/* private instance variables */
 	private int margin, curvAmt, tileSize;
-	private PuzzleState currentState;
+	/* PuzzleStates are immutable, so the field just has to be volatile for the solver
+	 * thread and the EDT to see each other's updates. */
+	private volatile PuzzleState currentState;
+	private JLabel movesLabel;
+	
+	/* The hint engine keeps the optimal plan for the current state up to date as the
+	 * user moves tiles.  All calls to it are made from a single background thread so
+	 * that the GUI never waits on a search.
+	 */
+	private final HintEngine hintEngine = new HintEngine(Heuristic.DEFAULT, HINT_BUDGET_MILLIS);
+	private final ExecutorService hintThread = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "hint-engine");
+		thread.setDaemon(true);
+		return thread;
+	});
 		
 	/* this boolean will be used to prevent the user from interrupting the optimal 
 	 * solver, which would cause problems. */
@@ -68,9 +94,71 @@ public class MainPanel extends JPanel {
 		bottomPanel.setPreferredSize(new Dimension(gridSize, bottomPanelSize));
 		add(bottomPanel, BorderLayout.SOUTH);
 		
+		updateHint(currentState, true);
 		repaintMainPanel();
 	}
 
+	/* Asks the hint engine, on its background thread, for the plan from the given
+	 * state, and shows the number of moves to go once it is known.  If reset is true,
+	 * the engine starts over instead of reusing the plan for the previous state.
+	 */
+	private void updateHint(PuzzleState state, boolean reset) {
+		movesLabel.setText("To go: ...");
+		hintThread.execute(() -> {
+			HintEngine.Hint hint = reset ? hintEngine.reset(state) : hintEngine.moved(state);
+			SwingUtilities.invokeLater(() -> showHint(state, hint));
+		});
+	}
+
+	/* Returns the hint engine's plan from the given state, or null if it does not
+	 * have one.  Like every other call to the engine, it is made on the hint thread,
+	 * after any moves already handed to it, and the caller waits for the answer.
+	 */
+	private List<PuzzleState> getHintPlan(PuzzleState state) {
+		Future<List<PuzzleState>> plan = hintThread.submit(() -> hintEngine.getPlan(state));
+		while (true) {
+			try {
+				return plan.get();
+			} catch (InterruptedException e) {
+
+			} catch (ExecutionException e) {
+				return null; // solve from scratch instead
+			}
+		}
+	}
+
+	/* Shows the number of moves to go and the arrow key that makes the next move of
+	 * the plan, unless the user has already moved on to another state.
+	 */
+	private void showHint(PuzzleState state, HintEngine.Hint hint) {
+		if (!state.equals(currentState)) {
+			return;
+		}
+		if (hint.getMovesToGo() == 0) {
+			movesLabel.setText("Solved!");
+			return;
+		}
+		/* a "~" marks a number that might not be optimal */
+		String movesToGo = (hint.isOptimal() ? "" : "~") + hint.getMovesToGo();
+		movesLabel.setText("To go: " + movesToGo + " (" + arrowKeyFor(hint.getOperation()) + ")");
+	}
+
+	/* Returns the name of the arrow key that performs the given operation.  Each
+	 * arrow key moves a tile into the blank, so the blank moves the opposite way.
+	 */
+	private static String arrowKeyFor(int operation) {
+		switch(operation) {
+		case BoardOperations.MOVE_BLANK_UP:
+			return "Down";
+		case BoardOperations.MOVE_BLANK_DOWN:
+			return "Up";
+		case BoardOperations.MOVE_BLANK_LEFT:
+			return "Right";
+		default:
+			return "Left";
+		}
+	}
+
 	/* Repaints the entire main panel.  This is a wrapper around the repaint() method
 	 * for the MainPanel.
 	 */
@@ -147,24 +235,27 @@ public class MainPanel extends JPanel {
 						return;
 					} 
 					
+					PuzzleState previousState = currentState;
 					int keyCode = e.getKeyCode();
 					switch(keyCode) {
 					case 38:
-						currentState = currentState.getNewStateIncludeInverse(BoardOperations.MOVE_BLANK_DOWN);
+						currentState = currentState.getNewState(BoardOperations.MOVE_BLANK_DOWN);
 						break;
 					case 40:
-						currentState = currentState.getNewStateIncludeInverse(BoardOperations.MOVE_BLANK_UP);
+						currentState = currentState.getNewState(BoardOperations.MOVE_BLANK_UP);
 						break;
 					case 39:
-						currentState = currentState.getNewStateIncludeInverse(BoardOperations.MOVE_BLANK_LEFT);
+						currentState = currentState.getNewState(BoardOperations.MOVE_BLANK_LEFT);
 						break;
 					case 37:
-						currentState = currentState.getNewStateIncludeInverse(BoardOperations.MOVE_BLANK_RIGHT);
+						currentState = currentState.getNewState(BoardOperations.MOVE_BLANK_RIGHT);
 					}
 					
-					currentState.setGValue(0);
-					currentState.setParentOperation(-1);
-					currentState.setParent(null);
+					if (currentState == previousState) {
+						return; // the key did not correspond to a valid move
+					}
+					
+					updateHint(currentState, false);
 					repaintMainPanel();
 					
 				}
@@ -187,7 +278,11 @@ public class MainPanel extends JPanel {
 					
 					isSolving = true;
 					
-					List<PuzzleState> solution = PuzzleSolver.solve(currentState);
+					/* reuse the hint engine's plan if it already has one */
+					List<PuzzleState> solution = getHintPlan(currentState);
+					if (solution == null) {
+						solution = PuzzleSolver.solve(currentState);
+					}
 					int num = 0; // used to skip the scrambled state
 					
 					for (PuzzleState step : solution) {
@@ -220,6 +315,7 @@ public class MainPanel extends JPanel {
 
 						}
 					}
+					SwingUtilities.invokeLater(() -> updateHint(currentState, false));
 				}
 			}.start();
 			
@@ -238,7 +334,7 @@ public class MainPanel extends JPanel {
 				int x = margin + (c * tileSize);
 				int y = margin + (r * tileSize);
 
-				int number = currentState.getBoardState().get(i);
+				int number = currentState.getTile(i);
 				if (number == 0) {
 					continue;
 				}
@@ -296,7 +392,10 @@ public class MainPanel extends JPanel {
 		private BottomPanel(GridPanel grid) {
 			this.grid = grid;
 			setLayout(new GridLayout());
+			movesLabel = new JLabel("", SwingConstants.CENTER);
+			movesLabel.setFont(BOTTOM_PANEL_FONT);
 			add(new ScrambleButton());
+			add(movesLabel);
 			add(new SolveButton());
 		}
 
@@ -350,6 +449,7 @@ public class MainPanel extends JPanel {
 								return;
 							} else {
 								currentState = new PuzzleState();
+								updateHint(currentState, true);
 								repaintMainPanel();
 								mousePressed = false;
 							}
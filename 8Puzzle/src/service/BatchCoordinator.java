@@ -0,0 +1,458 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* Spreads a large batch of boards over several worker processes (see
+ * BatchWorker), which can run on this machine or on others.
+ *
+ * The boards are split into chunks, and the chunks are dealt out into as many
+ * shards as there are expected workers.  Each worker that connects takes
+ * ownership of a shard that has no owner and works through it from the front.
+ * A worker whose shard is empty "steals" a chunk from the back of the largest
+ * remaining shard, so fast workers keep busy until the whole job is done.
+ *
+ * Every solved chunk is written to its own file in a checkpoint directory as
+ * soon as it arrives, so a coordinator that is restarted with the same
+ * directory skips the chunks that are already done.  A chunk that has been
+ * handed to a worker is "leased" to it.  If the worker's connection drops, or
+ * it holds the lease for longer than the lease time, the chunk goes back to
+ * the front of its shard and the shard is free for another worker to take
+ * over.  Once every chunk is done, the results are merged in the same order
+ * as the input boards.
+ */
+public class BatchCoordinator {
+
+	private final List<String> boards;
+	private final int chunkSize;
+	private final int numChunks;
+	private final Path checkpointDirectory;
+	private final long leaseMillis;
+
+	/* the shards of chunks that have not been handed out, and their owners */
+	private final List<ArrayDeque<Integer>> shards = new ArrayList<>();
+	private final List<Integer> shardOwners = new ArrayList<>();
+
+	/* the chunks that are being solved, with their leases */
+	private final Map<Integer, Lease> leases = new HashMap<>();
+
+	private final boolean[] done;
+	private int numDone = 0;
+	private int nextWorkerId = 0;
+
+	/* A chunk handed to a worker, which it must send back before the deadline. */
+	private static class Lease {
+		final int worker;
+		final int shard;
+		final long deadline;
+
+		Lease(int worker, int shard, long deadline) {
+			this.worker = worker;
+			this.shard = shard;
+			this.deadline = deadline;
+		}
+	}
+
+	/* Creates a coordinator for the given boards (in the form read by
+	 * BoardCodec.parse(), one per line) that hands out chunkSize boards at a
+	 * time, deals them into numShards shards, and keeps its checkpoints in the
+	 * given directory.  Chunks that already have a checkpoint are not solved
+	 * again.
+	 */
+	public BatchCoordinator(List<String> boards, int chunkSize, int numShards, Path checkpointDirectory,
+			long leaseMillis) throws IOException {
+		this.boards = boards;
+		this.chunkSize = chunkSize;
+		this.numChunks = (boards.size() + chunkSize - 1) / chunkSize;
+		this.checkpointDirectory = checkpointDirectory;
+		this.leaseMillis = leaseMillis;
+		this.done = new boolean[numChunks];
+
+		Files.createDirectories(checkpointDirectory);
+		for (int shard = 0; shard < numShards; shard++) {
+			shards.add(new ArrayDeque<>());
+			shardOwners.add(-1);
+		}
+		for (int chunk = 0; chunk < numChunks; chunk++) {
+			if (Files.exists(checkpoint(chunk))) {
+				done[chunk] = true;
+				numDone++;
+			} else {
+				shards.get(chunk % numShards).addLast(chunk);
+			}
+		}
+	}
+
+	/* Serves workers on the given socket until every chunk is done, then writes
+	 * the results of all of the boards, in order, to the output file and deletes
+	 * the checkpoints.
+	 */
+	public void run(ServerSocket serverSocket, Path output) throws IOException, InterruptedException {
+		ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "batch-connection");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Thread acceptor = new Thread(() -> {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					connections.execute(() -> serve(socket));
+				} catch (IOException e) {
+					/* the socket was closed because the job is done */
+				}
+			}
+		}, "batch-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		synchronized (this) {
+			while (numDone < numChunks) {
+				wait(leaseMillis);
+				reclaimExpiredLeases();
+			}
+		}
+
+		/* give the workers a moment to hear that the job is done */
+		Thread.sleep(500);
+		serverSocket.close();
+		connections.shutdownNow();
+		merge(output);
+	}
+
+	/* getters */
+
+	public synchronized int getNumDone() {
+		return numDone;
+	}
+
+	public int getNumChunks() {
+		return numChunks;
+	}
+
+	/* Answers one worker's requests until it disconnects. */
+	private void serve(Socket socket) {
+		int worker;
+		synchronized (this) {
+			worker = nextWorkerId++;
+		}
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				Writer out = new BufferedWriter(
+						new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+
+			String request;
+			while ((request = in.readLine()) != null) {
+				if (request.equals("NEXT")) {
+					int chunk = assign(worker);
+					if (chunk == -1) {
+						out.write(isDone() ? "DONE\n" : "WAIT\n");
+					} else {
+						int from = chunk * chunkSize;
+						int to = Math.min(boards.size(), from + chunkSize);
+						out.write("CHUNK " + chunk + " " + (to - from) + "\n");
+						for (int i = from; i < to; i++) {
+							out.write(boards.get(i));
+							out.write('\n');
+						}
+					}
+					out.flush();
+				} else if (request.startsWith("RESULT ")) {
+					String[] header = request.split(" ");
+					int chunk = Integer.parseInt(header[1]);
+					int count = Integer.parseInt(header[2]);
+					List<String> results = new ArrayList<>(count);
+					for (int i = 0; i < count; i++) {
+						String line = in.readLine();
+						if (line == null) {
+							throw new IOException("worker " + worker + " disconnected while sending results");
+						}
+						results.add(line);
+					}
+					finish(worker, chunk, results);
+				} else {
+					throw new IOException("unexpected request from worker " + worker + ": " + request);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			/* the worker died or misbehaved; its chunks are handed out again below */
+		} finally {
+			release(worker);
+		}
+	}
+
+	/* Hands the worker the next chunk of its own shard, or steals one from the
+	 * back of the largest shard.  Returns -1 if there are none left.
+	 */
+	private synchronized int assign(int worker) {
+		reclaimExpiredLeases();
+
+		int shard = shardOwners.indexOf(worker);
+		if (shard == -1) {
+			shard = shardOwners.indexOf(-1);
+			if (shard != -1) {
+				shardOwners.set(shard, worker);
+			}
+		}
+
+		Integer chunk = null;
+		int from = shard;
+		if (shard != -1) {
+			chunk = shards.get(shard).pollFirst();
+		}
+		if (chunk == null) {
+			from = largestShard();
+			if (from != -1) {
+				chunk = shards.get(from).pollLast();
+			}
+		}
+		if (chunk == null) {
+			return -1;
+		}
+		leases.put(chunk, new Lease(worker, from, System.currentTimeMillis() + leaseMillis));
+		return chunk;
+	}
+
+	/* Saves the results of a chunk.  Results for a chunk that is already done
+	 * (because its lease expired and another worker finished it first) are
+	 * dropped.
+	 */
+	private void finish(int worker, int chunk, List<String> results) throws IOException {
+		int expected = Math.min(boards.size(), (chunk + 1) * chunkSize) - chunk * chunkSize;
+		if (chunk < 0 || chunk >= numChunks || results.size() != expected) {
+			throw new IOException("worker " + worker + " sent the wrong number of results for chunk " + chunk);
+		}
+		synchronized (this) {
+			if (done[chunk]) {
+				return;
+			}
+		}
+
+		/* write to a temporary file and move it into place so a checkpoint is never half written */
+		Path temporary = Files.createTempFile(checkpointDirectory, "chunk-" + chunk, ".tmp");
+		Files.write(temporary, results, StandardCharsets.UTF_8);
+		Files.move(temporary, checkpoint(chunk), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		synchronized (this) {
+			if (!done[chunk]) {
+				done[chunk] = true;
+				numDone++;
+				leases.remove(chunk);
+				for (ArrayDeque<Integer> shard : shards) {
+					shard.remove(chunk);
+				}
+			}
+			notifyAll();
+		}
+	}
+
+	/* Puts every chunk leased to a worker that has disconnected back into its
+	 * shard, and frees the worker's shard for someone else.
+	 */
+	private synchronized void release(int worker) {
+		Iterator<Map.Entry<Integer, Lease>> it = leases.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, Lease> entry = it.next();
+			if (entry.getValue().worker == worker) {
+				shards.get(entry.getValue().shard).addFirst(entry.getKey());
+				it.remove();
+			}
+		}
+		int shard = shardOwners.indexOf(worker);
+		if (shard != -1) {
+			shardOwners.set(shard, -1);
+		}
+	}
+
+	/* Puts chunks whose leases have run out back into their shards. */
+	private synchronized void reclaimExpiredLeases() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Integer, Lease>> it = leases.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, Lease> entry = it.next();
+			if (entry.getValue().deadline < now) {
+				shards.get(entry.getValue().shard).addFirst(entry.getKey());
+				it.remove();
+			}
+		}
+	}
+
+	private int largestShard() {
+		int largest = -1;
+		for (int shard = 0; shard < shards.size(); shard++) {
+			if (!shards.get(shard).isEmpty()
+					&& (largest == -1 || shards.get(shard).size() > shards.get(largest).size())) {
+				largest = shard;
+			}
+		}
+		return largest;
+	}
+
+	private synchronized boolean isDone() {
+		return numDone == numChunks;
+	}
+
+	/* Concatenates the checkpoints in order into the output file, then deletes them. */
+	private void merge(Path output) throws IOException {
+		try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				for (String line : Files.readAllLines(checkpoint(chunk), StandardCharsets.UTF_8)) {
+					out.write(line);
+					out.write('\n');
+				}
+			}
+		}
+		for (int chunk = 0; chunk < numChunks; chunk++) {
+			Files.delete(checkpoint(chunk));
+		}
+	}
+
+	private Path checkpoint(int chunk) {
+		return checkpointDirectory.resolve("chunk-" + chunk);
+	}
+
+	/* Runs a batch job.  The arguments are the input file of boards, the output
+	 * file, and these options:
+	 *
+	 *   --workers N         the number of shards, and of worker processes to
+	 *                       start on this machine (default 2)
+	 *   --external          wait for N workers to be started by hand, possibly
+	 *                       on other hosts, instead of starting them
+	 *   --bind ADDRESS      the address to listen on (default localhost)
+	 *   --port P            the port to listen on (default any free port)
+	 *   --chunk-size C      boards per chunk (default 256)
+	 *   --threads T         solver threads per started worker
+	 *   --checkpoints DIR   the checkpoint directory (default output.checkpoints)
+	 *   --logs DIR          where started workers write their output, as
+	 *                       output.worker-N.log (default the directory of the
+	 *                       output file)
+	 *   --lease-seconds S   how long a worker may hold a chunk (default 300)
+	 *
+	 * The worker logs are kept after the job is done.  The checkpoint directory
+	 * is removed at the end only if the coordinator made it: the default one
+	 * always is, but a directory given with --checkpoints that already existed
+	 * is left alone, along with anything else in it.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: BatchCoordinator input output [options]");
+			System.exit(2);
+		}
+		Path input = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		int workers = 2;
+		boolean external = false;
+		String bind = "localhost";
+		int port = 0;
+		int chunkSize = 256;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		Path checkpoints = Paths.get(args[1] + ".checkpoints");
+		boolean defaultCheckpoints = true;
+		Path logs = output.toAbsolutePath().getParent();
+		long leaseSeconds = 300;
+		for (int i = 2; i < args.length; i++) {
+			switch (args[i]) {
+			case "--workers":
+				workers = Integer.parseInt(args[++i]);
+				break;
+			case "--external":
+				external = true;
+				break;
+			case "--bind":
+				bind = args[++i];
+				break;
+			case "--port":
+				port = Integer.parseInt(args[++i]);
+				break;
+			case "--chunk-size":
+				chunkSize = Integer.parseInt(args[++i]);
+				break;
+			case "--threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			case "--checkpoints":
+				checkpoints = Paths.get(args[++i]);
+				defaultCheckpoints = false;
+				break;
+			case "--logs":
+				logs = Paths.get(args[++i]);
+				break;
+			case "--lease-seconds":
+				leaseSeconds = Long.parseLong(args[++i]);
+				break;
+			default:
+				System.err.println("unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		List<String> boards = new ArrayList<>();
+		for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+			if (!line.trim().isEmpty()) {
+				boards.add(line);
+			}
+		}
+		boolean ownCheckpoints = defaultCheckpoints || !Files.exists(checkpoints);
+		BatchCoordinator coordinator = new BatchCoordinator(boards, chunkSize, workers, checkpoints,
+				leaseSeconds * 1000);
+
+		ServerSocket serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bind), port));
+		System.out.println(boards.size() + " boards in " + coordinator.getNumChunks() + " chunks ("
+				+ coordinator.getNumDone() + " already done), listening on " + bind + ":"
+				+ serverSocket.getLocalPort());
+
+		List<Process> processes = new ArrayList<>();
+		if (!external) {
+			Files.createDirectories(logs);
+			String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+			for (int i = 0; i < workers; i++) {
+				processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						BatchWorker.class.getName(), bind, Integer.toString(serverSocket.getLocalPort()),
+						Integer.toString(threads))
+						.redirectErrorStream(true)
+						.redirectOutput(logs.resolve(output.getFileName() + ".worker-" + i + ".log").toFile())
+						.start());
+			}
+		}
+
+		long start = System.nanoTime();
+		coordinator.run(serverSocket, output);
+		for (Process process : processes) {
+			process.waitFor();
+		}
+		if (ownCheckpoints) {
+			try {
+				Files.deleteIfExists(checkpoints);
+			} catch (DirectoryNotEmptyException e) {
+				System.err.println("left " + checkpoints + " in place, since something else was put in it");
+			}
+		}
+		System.out.println("wrote " + output + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+}
@@ -0,0 +1,143 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import board.PuzzleSolver;
+
+/* One worker process of a sharded batch job run by a BatchCoordinator.  The
+ * worker connects to the coordinator, repeatedly asks it for a chunk of
+ * boards, solves the chunk with a pool of threads, and sends back one line per
+ * board in the same form as the /batch endpoint of SolveServer: the solution
+ * from BoardCodec.formatMoves(), or "error" and a message.
+ *
+ * The protocol is line-based text over a single socket:
+ *
+ *   worker:      NEXT
+ *   coordinator: CHUNK <id> <n>, followed by n boards, one per line
+ *                WAIT, if every remaining chunk is being solved elsewhere
+ *                DONE, once every chunk has been solved
+ *   worker:      RESULT <id> <n>, followed by n result lines
+ */
+public class BatchWorker {
+
+	private static final long WAIT_MILLIS = 200;
+
+	private final String host;
+	private final int port;
+	private final int threads;
+
+	public BatchWorker(String host, int port, int threads) {
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/* Solves chunks until the coordinator says the job is done.  Returns the
+	 * number of chunks this worker solved.
+	 */
+	public int run() throws IOException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		int chunks = 0;
+		try (Socket socket = new Socket(host, port);
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				Writer out = new BufferedWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+			while (true) {
+				out.write("NEXT\n");
+				out.flush();
+
+				String reply = in.readLine();
+				if (reply == null) {
+					throw new IOException("the coordinator closed the connection");
+				}
+				if (reply.equals("DONE")) {
+					return chunks;
+				}
+				if (reply.equals("WAIT")) {
+					Thread.sleep(WAIT_MILLIS);
+					continue;
+				}
+
+				String[] header = reply.split(" ");
+				if (header.length != 3 || !header[0].equals("CHUNK")) {
+					throw new IOException("unexpected reply from the coordinator: " + reply);
+				}
+				int count = Integer.parseInt(header[2]);
+				List<String> boards = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					String line = in.readLine();
+					if (line == null) {
+						throw new IOException("the coordinator closed the connection");
+					}
+					boards.add(line);
+				}
+
+				List<String> results = solveAll(pool, boards);
+				out.write("RESULT " + header[1] + " " + results.size() + "\n");
+				for (String result : results) {
+					out.write(result);
+					out.write('\n');
+				}
+				chunks++;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/* Solves the boards in parallel and returns their result lines in order. */
+	private static List<String> solveAll(ExecutorService pool, List<String> boards) throws InterruptedException {
+		List<Future<String>> futures = new ArrayList<>(boards.size());
+		for (String board : boards) {
+			futures.add(pool.submit(() -> solveLine(board)));
+		}
+		List<String> results = new ArrayList<>(boards.size());
+		for (Future<String> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				results.add("error " + e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/* Returns the result line for a single board. */
+	static String solveLine(String line) {
+		try {
+			return BoardCodec.formatMoves(PuzzleSolver.solve(BoardCodec.parse(line)));
+		} catch (IllegalArgumentException e) {
+			return "error " + e.getMessage();
+		}
+	}
+
+	/* Starts a worker.  The arguments are the host and port of the coordinator
+	 * and, optionally, the number of solver threads (one per processor by
+	 * default).
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: BatchWorker host port [threads]");
+			System.exit(2);
+		}
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int chunks = new BatchWorker(args[0], Integer.parseInt(args[1]), threads).run();
+		System.out.println("worker finished after solving " + chunks + " chunks");
+	}
+
+}
@@ -0,0 +1,92 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import board.BoardOperations;
+import board.PuzzleState;
+
+/* Converts PuzzleStates and solutions to and from the single-line text format
+ * used by the services in this package.  A board is written as its 9 tiles in
+ * row-major order, with 0 for the blank, for example "8 6 3 2 7 0 4 5 1".
+ * Tiles may be separated by spaces or commas.
+ */
+public class BoardCodec {
+
+	/* Parses a board from a single line of text.  An IllegalArgumentException is
+	 * thrown if the line is not a valid, solvable 8-Puzzle.
+	 */
+	public static PuzzleState parse(String line) {
+		String[] tokens = line.trim().split("[\\s,]+");
+		if (tokens.length != 9) {
+			throw new IllegalArgumentException("expected 9 tiles but found " + tokens.length + ": " + line);
+		}
+
+		ArrayList<Integer> tiles = new ArrayList<>(9);
+		Set<Integer> seen = new HashSet<>();
+		for (String token : tokens) {
+			int tile;
+			try {
+				tile = Integer.parseInt(token);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(token + " is not a tile: " + line);
+			}
+			if (tile < 0 || tile > 8 || !seen.add(tile)) {
+				throw new IllegalArgumentException("tiles must be 0 to 8, each used once: " + line);
+			}
+			tiles.add(tile);
+		}
+
+		PuzzleState state = new PuzzleState(tiles);
+		if (!state.isSolvable()) {
+			throw new IllegalArgumentException("the puzzle cannot be solved: " + line);
+		}
+		return state;
+	}
+
+	/* Writes a board as a single line of text, the inverse of parse(). */
+	public static String format(PuzzleState state) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 9; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(state.getTile(i));
+		}
+		return sb.toString();
+	}
+
+	/* Writes a solution (as returned by PuzzleSolver.solve()) compactly as the
+	 * number of moves followed by the direction the blank moves in for each step,
+	 * for example "3 LUR".
+	 */
+	public static String formatMoves(List<PuzzleState> solution) {
+		StringBuilder moves = new StringBuilder();
+		for (int i = 1; i < solution.size(); i++) {
+			moves.append(operationSymbol(solution.get(i - 1).operationTo(solution.get(i))));
+		}
+		if (moves.length() == 0) {
+			return "0";
+		}
+		return (solution.size() - 1) + " " + moves;
+	}
+
+	/* Returns the letter used for an operation by formatMoves(). */
+	public static char operationSymbol(int operation) {
+		switch(operation) {
+		case BoardOperations.MOVE_BLANK_UP:
+			return 'U';
+		case BoardOperations.MOVE_BLANK_DOWN:
+			return 'D';
+		case BoardOperations.MOVE_BLANK_LEFT:
+			return 'L';
+		case BoardOperations.MOVE_BLANK_RIGHT:
+			return 'R';
+		default:
+			throw new IllegalArgumentException(operation + " is not a valid operation");
+		}
+	}
+
+}
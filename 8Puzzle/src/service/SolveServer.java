@@ -0,0 +1,230 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import board.PuzzleState;
+import board.SolveMetrics;
+import board.SolverService;
+import board.SolverService.Priority;
+
+/* A small HTTP server that solves 8-Puzzles, built on the HTTP server that
+ * ships with the JDK so that no external framework is needed.  It listens on
+ * localhost and understands two requests:
+ *
+ *   POST /solve  with a single board (see BoardCodec) as the body.  The
+ *                response has one line per board in an optimal solution,
+ *                from the scrambled board to the solved board.
+ *   POST /batch  with one board per line.  The response has one line per
+ *                board, holding either the solution in the compact form of
+ *                BoardCodec.formatMoves() or "error" and a message.
+ *   GET /metrics the latency and throughput totals of SolveMetrics.GLOBAL, in
+ *                the Prometheus text format.
+ *
+ * Requests never block a thread while they wait for a solve.  Each board is
+ * handed to a SolverService, and once the last solve the request needs has
+ * finished, the response is written on the pool that reads requests.  Boards from /solve go in the
+ * service's interactive lane and boards from /batch in its batch lane, so a
+ * single board is never stuck behind a large batch.  If several requests ask
+ * for the same board at the same time, they all share a single search.  Each
+ * lane has a bounded queue, and once it is full the server answers 503
+ * (Service Unavailable) instead of queueing more work, so a burst of requests
+ * cannot use up all of the memory.  A batch that is turned away partway
+ * through cancels the boards it had already handed over.
+ */
+public class SolveServer {
+
+	private static final int MAX_BODY_BYTES = 1 << 20;
+
+	private final HttpServer server;
+	private final SolverService solver;
+	private final ExecutorService requestPool;
+
+	/* Creates a server on the given port of localhost that runs at most
+	 * solverThreads searches at once and lets at most queueCapacity more wait
+	 * in each lane.
+	 */
+	public SolveServer(int port, int solverThreads, int queueCapacity) throws IOException {
+		solver = new SolverService(solverThreads, queueCapacity);
+		requestPool = Executors.newFixedThreadPool(Math.max(2, solverThreads / 2));
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/solve", exchange -> handle(exchange, false));
+		server.createContext("/batch", exchange -> handle(exchange, true));
+		server.createContext("/metrics", SolveServer::handleMetrics);
+		server.setExecutor(requestPool);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/* Stops accepting requests, waiting at most the given number of seconds for
+	 * the ones in progress to finish.
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		solver.close();
+		requestPool.shutdownNow();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/* Reads the request, starts (or joins) a search for each board in it, and
+	 * arranges for the response to be sent once every search has finished.
+	 */
+	private void handle(HttpExchange exchange, boolean batch) throws IOException {
+
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().add("Allow", "POST");
+			respond(exchange, 405, "only POST is supported\n");
+			return;
+		}
+
+		String body = readBody(exchange);
+		if (body == null) {
+			respond(exchange, 413, "the request body is too large\n");
+			return;
+		}
+
+		List<String> lines = new ArrayList<>();
+		for (String line : body.split("\n")) {
+			if (!line.trim().isEmpty()) {
+				lines.add(line);
+			}
+		}
+		if (!batch && lines.size() != 1) {
+			respond(exchange, 400, "expected exactly one board\n");
+			return;
+		}
+
+		/* the searches this request has started or joined, so they can be given
+		 * up if the rest of the request is turned away */
+		List<CompletableFuture<List<PuzzleState>>> solutions = new ArrayList<>(lines.size());
+		List<CompletableFuture<String>> results = new ArrayList<>(lines.size());
+		for (String line : lines) {
+			PuzzleState state;
+			try {
+				state = BoardCodec.parse(line);
+			} catch (IllegalArgumentException e) {
+				if (!batch) {
+					respond(exchange, 400, e.getMessage() + "\n");
+					return;
+				}
+				results.add(CompletableFuture.completedFuture("error " + e.getMessage()));
+				continue;
+			}
+
+			CompletableFuture<List<PuzzleState>> solution;
+			try {
+				solution = solver.solve(state, batch ? Priority.BATCH : Priority.INTERACTIVE);
+			} catch (RejectedExecutionException e) {
+				/* nobody will read the boards already handed over, so drop the ones
+				 * that are still waiting (and nobody else wants) before answering */
+				for (CompletableFuture<List<PuzzleState>> submitted : solutions) {
+					submitted.cancel(false);
+				}
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				respond(exchange, 503, "the server is busy\n");
+				return;
+			}
+			solutions.add(solution);
+			results.add(solution.thenApply(batch ? BoardCodec::formatMoves : SolveServer::formatSolution));
+		}
+
+		/* the response is written on a request thread, so solver threads only ever solve */
+		CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((ignored, error) -> {
+			try {
+				if (error != null) {
+					Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+					respond(exchange, 500, cause + "\n");
+					return;
+				}
+				StringBuilder response = new StringBuilder();
+				for (CompletableFuture<String> result : results) {
+					response.append(result.join()).append('\n');
+				}
+				respond(exchange, 200, response.toString());
+			} catch (IOException e) {
+				exchange.close();
+			}
+		}, requestPool);
+	}
+
+	private static void handleMetrics(HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().add("Allow", "GET");
+			respond(exchange, 405, "only GET is supported\n");
+			return;
+		}
+		StringBuilder metrics = new StringBuilder();
+		SolveMetrics.GLOBAL.writePrometheus(metrics);
+		respond(exchange, 200, metrics.toString());
+	}
+
+	private static String formatSolution(List<PuzzleState> solution) {
+		StringBuilder sb = new StringBuilder();
+		for (PuzzleState step : solution) {
+			if (sb.length() > 0) {
+				sb.append('\n');
+			}
+			sb.append(BoardCodec.format(step));
+		}
+		return sb.toString();
+	}
+
+	/* Returns the body of the request, or null if it is larger than MAX_BODY_BYTES. */
+	private static String readBody(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = exchange.getRequestBody()) {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				bytes.write(buffer, 0, n);
+				if (bytes.size() > MAX_BODY_BYTES) {
+					return null;
+				}
+			}
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/* Starts a server.  The optional arguments are the port (8080 by default),
+	 * the number of solver threads (one per processor by default), and the
+	 * capacity of the queue of waiting searches in each lane (1024 by default).
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int queueCapacity = (args.length > 2) ? Integer.parseInt(args[2]) : 1024;
+
+		SolveServer server = new SolveServer(port, threads, queueCapacity);
+		server.start();
+		System.out.println("Solving 8-Puzzles on http://localhost:" + server.getPort() + "/");
+	}
+
+}